@@ -2,19 +2,34 @@ package com.communityevents;
 
 import com.communityevents.controller.Controller;
 import com.communityevents.database.Database;
+import com.communityevents.json.JsonCodec;
+import com.communityevents.lifecycle.Deadline;
+import com.communityevents.lifecycle.ServerLifecycle;
+import com.communityevents.lifecycle.ServiceUnavailableException;
+import com.communityevents.lifecycle.ShutdownCoordinator;
+import com.communityevents.lifecycle.WarmUp;
+import com.communityevents.logging.Logging;
+import com.communityevents.ui.UserInterface;
 import io.javalin.Javalin;
+import io.javalin.http.BadRequestResponse;
 import io.javalin.http.staticfiles.Location;
+import io.javalin.json.JavalinJackson;
 import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Main {
+    private static final Logger log = LoggerFactory.getLogger(Main.class);
+
     public static void main(String[] args) {
         // Initialize database connection and schema
+        long startupStart = System.nanoTime();
         try {
             Database.getInstance();
-            System.out.println("Database initialized successfully");
+            log.info("Database initialized successfully in {} ms", (System.nanoTime() - startupStart) / 1_000_000);
         } catch (Exception e) {
-            System.err.println("Failed to initialize database: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Failed to initialize database: {}", e.getMessage(), e);
+            Logging.shutdown();
             System.exit(1);
         }
         
@@ -22,16 +37,82 @@ public class Main {
         
         Javalin app = Javalin.create(config -> {
             config.staticFiles.add("/static", Location.CLASSPATH);
+            // Responses use the same mapper (and model serializers) as request parsing
+            config.jsonMapper(new JavalinJackson(JsonCodec.getInstance().getMapper()));
         }).start(7000);
 
+        // Count in-flight requests so shutdown can wait for them
+        ServerLifecycle lifecycle = ServerLifecycle.getInstance();
+        app.before(ctx -> {
+            lifecycle.requestStarted();
+            ctx.attribute("inFlight", true);
+        });
+        app.after(ctx -> {
+            if (ctx.attribute("inFlight") != null) {
+                lifecycle.requestFinished();
+            }
+        });
+
         // Add CORS headers manually
         app.before(ctx -> {
             ctx.header("Access-Control-Allow-Origin", "*");
             ctx.header("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-            ctx.header("Access-Control-Allow-Headers", "Content-Type, Authorization");
+            ctx.header("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Community");
             ctx.header("Access-Control-Allow-Credentials", "true");
         });
 
+        // Until warm-up has finished only the synthetic warm-up requests reach the API,
+        // and once shutdown starts draining no new API requests are taken
+        app.before("/api/*", ctx -> {
+            if (lifecycle.isDraining()) {
+                ctx.header("Connection", "close");
+                throw new ServiceUnavailableException("Server is shutting down", 1);
+            }
+            if (!lifecycle.isWarmedUp() && !WarmUp.isWarmUpRequest(ctx.header(WarmUp.HEADER))) {
+                throw new ServiceUnavailableException("Server is starting up", 1);
+            }
+        });
+        app.exception(ServiceUnavailableException.class, (e, ctx) -> {
+            ctx.header("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            UserInterface.getInstance().displayError(ctx, e.getMessage(), 503);
+        });
+        // Rejected before reaching a handler, e.g. an unknown community
+        app.exception(BadRequestResponse.class, (e, ctx) ->
+                UserInterface.getInstance().displayError(ctx, e.getMessage(), 400));
+
+        // Health checks for load balancers and orchestrators
+        app.get("/health/live", controller::handleLiveness);
+        app.get("/health/ready", controller::handleReadiness);
+        app.get("/health/audit", controller::handleAuditStats);
+        app.get("/health/errors", controller::handleErrorStats);
+        app.get("/health/database", controller::handleDatabaseStats);
+        app.get("/health/admission", controller::handleAdmissionStats);
+
+        // Time budget of each API request. Database work still running when it is
+        // used up is cancelled and the client gets a 503; 0 means no budget.
+        long requestBudget = budgetFromEnvironment("REQUEST_BUDGET_MS", 5000);
+        long searchBudget = budgetFromEnvironment("SEARCH_BUDGET_MS", 3000);
+        long suggestBudget = budgetFromEnvironment("SUGGEST_BUDGET_MS", 1000);
+        long exportBudget = budgetFromEnvironment("EXPORT_BUDGET_MS", 300000);
+        app.before("/api/*", ctx -> Deadline.start(requestBudget));
+        app.before("/api/events/search", ctx -> Deadline.start(searchBudget));
+        app.before("/api/events/facets", ctx -> Deadline.start(searchBudget));
+        app.before("/api/suggest", ctx -> Deadline.start(suggestBudget));
+        // Exports stream for as long as the client takes to download, up to their own, longer limit
+        app.before("/api/events/export.csv", ctx -> Deadline.start(exportBudget));
+        app.before("/api/events/export.ics", ctx -> Deadline.start(exportBudget));
+        app.after("/api/*", ctx -> Deadline.clear());
+
+        // Track the session user per request for read-your-writes routing to replicas,
+        // and the community whose shard serves it
+        app.before("/api/*", controller::bindRequestContext);
+        app.after("/api/*", controller::clearRequestContext);
+
+        // Admission by priority class, so a burst of searches cannot hold up sign-ins and writes;
+        // queue time counts against the request's budget
+        app.before("/api/*", controller::admitRequest);
+        app.after("/api/*", controller::finishRequest);
+
         // Handle OPTIONS requests for CORS preflight
         app.options("/*", ctx -> {
             ctx.status(200);
@@ -43,6 +124,24 @@ public class Main {
         // Story 2: Search Events
         app.get("/api/events/search", controller::handleSearch);
 
+        // Facet counts for the search filters (must come before /api/events/{id})
+        app.get("/api/events/facets", controller::handleFacets);
+
+        // CSV and iCalendar downloads of the search results (must come before /api/events/{id})
+        app.get("/api/events/export.csv", controller::handleExport);
+        app.get("/api/events/export.ics", controller::handleExport);
+
+        // Trending events by recent activity (must come before /api/events/{id})
+        app.get("/api/events/trending", controller::handleTrending);
+
+        // Typeahead suggestions for titles, organizers, locations and categories
+        app.get("/api/suggest", controller::handleSuggest);
+
+        // RSVP to an event, cancel it, or check it (must come before /api/events/{id})
+        app.get("/api/events/{id}/rsvp", controller::handleGetRsvp);
+        app.post("/api/events/{id}/rsvp", controller::handleRsvp);
+        app.delete("/api/events/{id}/rsvp", controller::handleRsvp);
+
         // Get comments for an event (must come before /api/events/{id})
         app.get("/api/events/{id}/comments", controller::handleGetComments);
 
@@ -76,7 +175,28 @@ public class Main {
             }
         });
 
-        System.out.println("Server running on http://localhost:7000");
+        // Drain requests and close resources on SIGTERM / Ctrl+C
+        new ShutdownCoordinator(app).register();
+
+        // Warm up before reporting ready
+        new WarmUp(app.port()).run();
+        lifecycle.markReady();
+
+        log.info("Server running on http://localhost:7000 (startup took {} ms)",
+                (System.nanoTime() - startupStart) / 1_000_000);
+    }
+
+    private static long budgetFromEnvironment(String name, long defaultMillis) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultMillis;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}: {}", name, value);
+            return defaultMillis;
+        }
     }
 }
 
@@ -0,0 +1,201 @@
+package com.communityevents.activity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Time-decayed view and comment activity per event, in fixed memory.
+ *
+ * Activity goes into a Count-Min sketch (DEPTH rows of WIDTH counters; an
+ * event's estimate is the minimum of its counters, which can only overcount).
+ * A small open-addressed table of candidate ids tracks the heaviest events:
+ * an event takes a free slot among its probe positions, or replaces the
+ * lightest candidate there when its own estimate is higher. Every half-life
+ * all counters are halved, so old activity fades.
+ *
+ * Recording only does atomic adds and compare-and-sets on preallocated
+ * arrays: it never locks and never allocates.
+ */
+public class ActivityTracker {
+    private static final Logger log = LoggerFactory.getLogger(ActivityTracker.class);
+
+    public static final int VIEW_WEIGHT = 1;
+    public static final int COMMENT_WEIGHT = 5;
+    public static final int MAX_TRENDING = 50;
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 2048; // power of two
+    private static final int CANDIDATES = 256; // power of two
+    private static final int PROBES = 4;
+    private static final int EMPTY = 0; // event ids are SERIAL, so never 0
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    private static ActivityTracker instance;
+    private final AtomicLongArray counters = new AtomicLongArray(DEPTH * WIDTH);
+    private final AtomicIntegerArray candidates = new AtomicIntegerArray(CANDIDATES);
+    private final ScheduledExecutorService decay; // daemon; lives as long as the process
+
+    private ActivityTracker() {
+        long halfLifeMillis = readHalfLifeFromEnvironment();
+        this.decay = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "activity-decay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        decay.scheduleAtFixedRate(this::halve, halfLifeMillis, halfLifeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized ActivityTracker getInstance() {
+        if (instance == null) {
+            instance = new ActivityTracker();
+        }
+        return instance;
+    }
+
+    private static long readHalfLifeFromEnvironment() {
+        String halfLife = System.getenv("TRENDING_HALF_LIFE_MS");
+        if (halfLife != null && !halfLife.isEmpty()) {
+            try {
+                return Math.max(1000, Long.parseLong(halfLife.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid TRENDING_HALF_LIFE_MS: {}", halfLife);
+            }
+        }
+        return 30 * 60 * 1000;
+    }
+
+    public void recordView(int eventId) {
+        record(eventId, VIEW_WEIGHT);
+    }
+
+    public void recordComment(int eventId) {
+        record(eventId, COMMENT_WEIGHT);
+    }
+
+    private void record(int eventId, int weight) {
+        if (eventId == EMPTY) {
+            return;
+        }
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(cell(row, eventId), weight));
+        }
+        offerCandidate(eventId, estimate);
+    }
+
+    // Makes the event a candidate if it is one already, a probed slot is free, or it outweighs the lightest probed one
+    private void offerCandidate(int eventId, long estimate) {
+        int start = mix(eventId, SEEDS[0]) & (CANDIDATES - 1);
+        int lightestSlot = -1;
+        int lightestId = EMPTY;
+        long lightestEstimate = Long.MAX_VALUE;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (start + probe) & (CANDIDATES - 1);
+            int current = candidates.get(slot);
+            if (current == eventId) {
+                return;
+            }
+            if (current == EMPTY) {
+                if (candidates.compareAndSet(slot, EMPTY, eventId)) {
+                    return;
+                }
+                current = candidates.get(slot);
+                if (current == eventId) {
+                    return;
+                }
+            }
+            long currentEstimate = estimate(current);
+            if (currentEstimate < lightestEstimate) {
+                lightestSlot = slot;
+                lightestId = current;
+                lightestEstimate = currentEstimate;
+            }
+        }
+        if (lightestSlot >= 0 && lightestEstimate < estimate) {
+            // Losing this race just means another hot event took the slot
+            candidates.compareAndSet(lightestSlot, lightestId, eventId);
+        }
+    }
+
+    public long estimate(int eventId) {
+        if (eventId == EMPTY) {
+            return 0;
+        }
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(cell(row, eventId)));
+        }
+        return estimate;
+    }
+
+    /**
+     * The most active events, highest decayed score first, at most limit of
+     * them (capped at MAX_TRENDING). Ids may include events deleted since.
+     */
+    public LinkedHashMap<Integer, Long> trending(int limit) {
+        List<long[]> scored = new ArrayList<>();
+        for (int slot = 0; slot < CANDIDATES; slot++) {
+            int eventId = candidates.get(slot);
+            if (eventId != EMPTY) {
+                long score = estimate(eventId);
+                if (score > 0) {
+                    scored.add(new long[] {eventId, score});
+                }
+            }
+        }
+        scored.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+
+        LinkedHashMap<Integer, Long> top = new LinkedHashMap<>();
+        for (long[] entry : scored.subList(0, Math.min(Math.min(limit, MAX_TRENDING), scored.size()))) {
+            top.put((int) entry[0], entry[1]);
+        }
+        return top;
+    }
+
+    // Drops a deleted event from the candidates; its sketch counters simply decay
+    public void forget(int eventId) {
+        int start = mix(eventId, SEEDS[0]) & (CANDIDATES - 1);
+        for (int probe = 0; probe < PROBES; probe++) {
+            candidates.compareAndSet((start + probe) & (CANDIDATES - 1), eventId, EMPTY);
+        }
+    }
+
+    // Exponential decay in half-life steps; concurrent adds are never lost
+    private void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value;
+            do {
+                value = counters.get(i);
+            } while (value != 0 && !counters.compareAndSet(i, value, value >> 1));
+        }
+        for (int slot = 0; slot < CANDIDATES; slot++) {
+            int eventId = candidates.get(slot);
+            if (eventId != EMPTY && estimate(eventId) == 0) {
+                candidates.compareAndSet(slot, eventId, EMPTY);
+            }
+        }
+    }
+
+    private static int cell(int row, int eventId) {
+        return row * WIDTH + (mix(eventId, SEEDS[row]) & (WIDTH - 1));
+    }
+
+    // Murmur3 finalizer over the seeded id, so rows hash independently
+    private static int mix(int value, int seed) {
+        int h = value * seed;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,15 @@
+package com.communityevents.audit;
+
+// What an audit record says happened; stored by name
+public enum AuditAction {
+    EVENT_CREATED,
+    EVENT_UPDATED,
+    EVENT_DELETED,
+    COMMENT_CREATED,
+    COMMENT_EDITED,
+    COMMENT_DELETED,
+    USER_REGISTERED,
+    LOGIN,
+    LOGIN_FAILED,
+    LOGOUT
+}
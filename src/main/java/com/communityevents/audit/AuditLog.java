@@ -0,0 +1,244 @@
+package com.communityevents.audit;
+
+import com.communityevents.database.DatabaseConnectionManager;
+import com.communityevents.logging.ErrorReporter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Audit trail of writes and logins that costs a request handler a few
+ * nanoseconds and never blocks it.
+ *
+ * Records live in a pre-allocated ring of AUDIT_BUFFER_SIZE fixed-size slots
+ * held in parallel primitive arrays, so publishing allocates nothing.
+ * Producers claim the next sequence with a CAS, fill the slot and then
+ * publish it by storing its sequence in the slot's marker. A single consumer
+ * thread reads published slots in sequence order, frees them, and hands them
+ * to the sink in batches of up to AUDIT_BATCH_SIZE.
+ *
+ * Overflow policy: when the ring is full (the sink is down or slower than the
+ * writes) new records are dropped and counted, rather than making requests
+ * wait. A batch the sink still rejects after a few retries is also dropped
+ * and counted. getStats() reports drops, failures and how far the consumer is
+ * behind.
+ */
+public class AuditLog {
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+    private static final ErrorReporter errors = ErrorReporter.forClass(AuditLog.class);
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final AuditAction[] ACTIONS = AuditAction.values();
+
+    private static AuditLog instance;
+
+    private final int capacity;
+    private final int mask;
+    private final int batchSize;
+    private final AuditSink sink;
+
+    // Slot contents; a slot is readable once published holds its sequence
+    private final long[] timestamps;
+    private final byte[] actions;
+    private final int[] userIds;
+    private final int[] targetIds;
+    private final AtomicLongArray published;
+
+    // Next sequence to hand to a producer
+    private final AtomicLong claimed = new AtomicLong();
+    // Next sequence the consumer will read; everything before it is free again
+    private volatile long consumed;
+
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long lastBatchLagMillis;
+
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    AuditLog(int capacity, int batchSize, AuditSink sink) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.mask = this.capacity - 1;
+        this.batchSize = batchSize;
+        this.sink = sink;
+        this.timestamps = new long[this.capacity];
+        this.actions = new byte[this.capacity];
+        this.userIds = new int[this.capacity];
+        this.targetIds = new int[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            published.set(i, -1);
+        }
+        this.consumer = new Thread(this::run, "audit-consumer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    public static synchronized AuditLog getInstance() {
+        if (instance == null) {
+            instance = fromEnvironment();
+        }
+        return instance;
+    }
+
+    private static AuditLog fromEnvironment() {
+        int capacity = intFromEnvironment("AUDIT_BUFFER_SIZE", 8192);
+        int batchSize = intFromEnvironment("AUDIT_BATCH_SIZE", 256);
+        // The embedded store has no tables, so it logs to files by default
+        String sinkName = System.getenv("AUDIT_SINK");
+        if (sinkName == null || sinkName.isEmpty()) {
+            sinkName = DatabaseConnectionManager.isEmbeddedMode() ? "file" : "database";
+        }
+        AuditSink sink;
+        if ("file".equalsIgnoreCase(sinkName.trim())) {
+            String directory = System.getenv("AUDIT_DIR");
+            sink = new FileAuditSink(Paths.get(directory == null || directory.isEmpty() ? "audit" : directory),
+                    intFromEnvironment("AUDIT_RETENTION_DAYS", 30));
+        } else {
+            sink = new DatabaseAuditSink();
+        }
+        return new AuditLog(capacity, batchSize, sink);
+    }
+
+    private static int intFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Queues a record without blocking. Returns false if it was dropped
+     * because the ring is full or the log is shut down.
+     */
+    public boolean publish(AuditAction action, int userId, int targetId) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        timestamps[slot] = System.currentTimeMillis();
+        actions[slot] = (byte) action.ordinal();
+        userIds[slot] = userId;
+        targetIds[slot] = targetId;
+        // Volatile store: the consumer sees the fields above once it sees this
+        published.set(slot, sequence);
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        long claimedCount = claimed.get();
+        long pending = claimedCount - consumed;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("published", claimedCount);
+        stats.put("pending", pending);
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.sum());
+        stats.put("failed", failed.get());
+        stats.put("oldestPendingMillis", oldestPendingMillis());
+        stats.put("lastBatchLagMillis", lastBatchLagMillis);
+        return stats;
+    }
+
+    // Age of the oldest record not yet taken by the consumer, 0 when caught up
+    private long oldestPendingMillis() {
+        long sequence = consumed;
+        int slot = (int) (sequence & mask);
+        if (published.get(slot) != sequence) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - timestamps[slot]);
+    }
+
+    private void run() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        long idleNanos = 0;
+        while (running || consumed < claimed.get()) {
+            long next = consumed;
+            while (batch.size() < batchSize) {
+                int slot = (int) ((next + batch.size()) & mask);
+                long sequence = next + batch.size();
+                if (published.get(slot) != sequence) {
+                    break;
+                }
+                batch.add(new AuditRecord(sequence, timestamps[slot], ACTIONS[actions[slot]],
+                        userIds[slot], targetIds[slot]));
+            }
+            if (batch.isEmpty()) {
+                // Back off while idle so a quiet server does not spin; capped to bound the lag
+                idleNanos = Math.min(MAX_IDLE_NANOS, Math.max(50_000, idleNanos * 2));
+                LockSupport.parkNanos(idleNanos);
+                if (!running && !hasPublished(consumed)) {
+                    // A producer claimed a slot and never filled it; nothing more will come
+                    break;
+                }
+                continue;
+            }
+            idleNanos = 0;
+            // Copied out, so producers can reuse the slots while the sink writes
+            consumed = next + batch.size();
+            write(batch);
+            batch.clear();
+        }
+        sink.close();
+    }
+
+    private boolean hasPublished(long sequence) {
+        return published.get((int) (sequence & mask)) == sequence;
+    }
+
+    private void write(List<AuditRecord> batch) {
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            try {
+                sink.write(batch);
+                written.addAndGet(batch.size());
+                lastBatchLagMillis = System.currentTimeMillis() - batch.get(0).getTimestamp();
+                return;
+            } catch (Exception e) {
+                if (attempt == MAX_WRITE_ATTEMPTS || !running) {
+                    failed.addAndGet(batch.size());
+                    errors.report("Dropping a batch of audit records", e);
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_MILLIS * attempt));
+            }
+        }
+    }
+
+    // Stops taking records and waits for the queued ones to reach the sink
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            consumer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
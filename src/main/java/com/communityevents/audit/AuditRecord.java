@@ -0,0 +1,42 @@
+package com.communityevents.audit;
+
+/**
+ * One audit record as handed to a sink. userId and targetId are 0 when there
+ * is no user (a failed login) or no target (a login or logout).
+ */
+public class AuditRecord {
+    private final long sequence;
+    private final long timestamp;
+    private final AuditAction action;
+    private final int userId;
+    private final int targetId;
+
+    public AuditRecord(long sequence, long timestamp, AuditAction action, int userId, int targetId) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.action = action;
+        this.userId = userId;
+        this.targetId = targetId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // Epoch millis
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public AuditAction getAction() {
+        return action;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getTargetId() {
+        return targetId;
+    }
+}
@@ -0,0 +1,11 @@
+package com.communityevents.audit;
+
+import java.util.List;
+
+// Durable destination for batches of audit records, called from the consumer thread only
+public interface AuditSink {
+    void write(List<AuditRecord> records) throws Exception;
+
+    default void close() {
+    }
+}
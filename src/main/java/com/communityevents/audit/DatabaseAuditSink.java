@@ -0,0 +1,12 @@
+package com.communityevents.audit;
+
+import com.communityevents.database.Database;
+import java.util.List;
+
+// Appends each batch to the audit_log table with one INSERT
+public class DatabaseAuditSink implements AuditSink {
+    @Override
+    public void write(List<AuditRecord> records) throws Exception {
+        Database.getInstance().saveAuditRecords(records);
+    }
+}
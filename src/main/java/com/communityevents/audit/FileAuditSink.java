@@ -0,0 +1,98 @@
+package com.communityevents.audit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes audit records as JSON lines to one file per UTC day
+ * (audit-2025-05-12.log) and deletes files older than the retention period.
+ * Each batch is flushed and forced to disk before the next is taken.
+ */
+public class FileAuditSink implements AuditSink {
+    private static final Logger log = LoggerFactory.getLogger(FileAuditSink.class);
+    private static final Pattern FILE_NAME = Pattern.compile("audit-(\\d{4}-\\d{2}-\\d{2})\\.log");
+
+    private final Path directory;
+    private final int retentionDays;
+    private LocalDate currentDay;
+    private Writer writer;
+    private FileChannel channel;
+
+    public FileAuditSink(Path directory, int retentionDays) {
+        this.directory = directory;
+        this.retentionDays = retentionDays;
+    }
+
+    @Override
+    public void write(List<AuditRecord> records) throws IOException {
+        for (AuditRecord record : records) {
+            LocalDate day = Instant.ofEpochMilli(record.getTimestamp()).atZone(ZoneOffset.UTC).toLocalDate();
+            if (!day.equals(currentDay)) {
+                roll(day);
+            }
+            writer.write("{\"sequence\":" + record.getSequence()
+                    + ",\"time\":\"" + Instant.ofEpochMilli(record.getTimestamp())
+                    + "\",\"action\":\"" + record.getAction().name()
+                    + "\",\"userId\":" + record.getUserId()
+                    + ",\"targetId\":" + record.getTargetId() + "}\n");
+        }
+        if (writer != null) {
+            writer.flush();
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        closeCurrent();
+    }
+
+    private void roll(LocalDate day) throws IOException {
+        closeCurrent();
+        Files.createDirectories(directory);
+        channel = FileChannel.open(directory.resolve("audit-" + day + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        currentDay = day;
+        deleteExpired(day.minusDays(retentionDays));
+    }
+
+    private void deleteExpired(LocalDate oldestKept) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Matcher matcher = FILE_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches() && LocalDate.parse(matcher.group(1)).isBefore(oldestKept)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private void closeCurrent() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Error closing audit file: {}", e.getMessage());
+        }
+        writer = null;
+        channel = null;
+        currentDay = null;
+    }
+}
@@ -1,23 +1,17 @@
 package com.communityevents.auth;
 
 import com.communityevents.database.Database;
-import com.communityevents.database.DatabaseConnectionManager;
 import com.communityevents.model.User;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class Authenticate {
     private static Authenticate instance;
     private Database database;
-    private DatabaseConnectionManager connectionManager;
     private Map<Integer, Boolean> loggedInUsers; // userId -> isLoggedIn
 
     private Authenticate() {
         this.database = Database.getInstance();
-        this.connectionManager = DatabaseConnectionManager.getInstance();
         this.loggedInUsers = new ConcurrentHashMap<>();
     }
 
@@ -81,16 +75,7 @@ public class Authenticate {
     }
 
     private void updateUserLoginStatus(int userId, boolean isLoggedIn) {
-        String sql = "UPDATE users SET is_logged_in = ? WHERE user_id = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setBoolean(1, isLoggedIn);
-            stmt.setInt(2, userId);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            System.err.println("Error updating user login status: " + e.getMessage());
-            e.printStackTrace();
-        }
+        database.updateUserLoginStatus(userId, isLoggedIn);
     }
 }
 
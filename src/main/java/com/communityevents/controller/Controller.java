@@ -1,27 +1,70 @@
 package com.communityevents.controller;
 
+import com.communityevents.activity.ActivityTracker;
+import com.communityevents.audit.AuditAction;
+import com.communityevents.audit.AuditLog;
 import com.communityevents.auth.Authenticate;
 import com.communityevents.database.Database;
+import com.communityevents.database.DatabaseConnectionManager;
+import com.communityevents.database.EventWriteResult;
+import com.communityevents.export.CsvExporter;
+import com.communityevents.export.EventExporter;
+import com.communityevents.export.IcsExporter;
+import com.communityevents.json.JsonCodec;
+import com.communityevents.lifecycle.AdmissionController;
+import com.communityevents.lifecycle.ServerLifecycle;
+import com.communityevents.lifecycle.ServiceUnavailableException;
+import com.communityevents.lifecycle.WarmUp;
+import com.communityevents.logging.ErrorReporter;
 import com.communityevents.model.*;
+import com.communityevents.search.FacetIndex;
+import com.communityevents.search.GeoIndex;
+import com.communityevents.search.SuggestionIndex;
+import com.communityevents.search.TimeIndex;
 import com.communityevents.ui.UserInterface;
+import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
 import io.javalin.http.HandlerType;
+import jakarta.servlet.http.HttpSession;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Controller {
+    private static final Logger log = LoggerFactory.getLogger(Controller.class);
+    private static final int DEFAULT_WINDOW_LIMIT = 50;
+    private static final int MAX_WINDOW_LIMIT = 500;
+    private static final int MAX_TRENDING_LIMIT = 100;
+    // Routes that accept community=all and merge the results of every shard
+    private static final Set<String> ALL_COMMUNITY_PATHS = Set.of(
+            "/api/events", "/api/events/search", "/api/events/export.csv", "/api/events/export.ics");
+
     private static Controller instance;
     private Database database;
+    private DatabaseConnectionManager connectionManager;
     private Authenticate authenticate;
     private UserInterface userInterface;
     private ObjectMapper objectMapper;
+    private ActivityTracker activityTracker;
+    private AuditLog auditLog;
+    private AdmissionController admissionController;
 
     private Controller() {
         this.database = Database.getInstance();
+        this.connectionManager = DatabaseConnectionManager.getInstance();
         this.authenticate = Authenticate.getInstance();
         this.userInterface = UserInterface.getInstance();
-        this.objectMapper = new ObjectMapper();
+        this.objectMapper = JsonCodec.getInstance().getMapper();
+        this.activityTracker = ActivityTracker.getInstance();
+        this.auditLog = AuditLog.getInstance();
+        this.admissionController = AdmissionController.getInstance();
     }
 
     public static synchronized Controller getInstance() {
@@ -33,12 +76,160 @@ public class Controller {
 
     // Story 1: View Community Events
     public void handleViewEvents(Context ctx) {
+        // window=today|weekend|week or upcoming=true are answered from the time index
+        String window = ctx.queryParam("window");
+        if (window != null || "true".equalsIgnoreCase(ctx.queryParam("upcoming"))) {
+            int limit = DEFAULT_WINDOW_LIMIT;
+            String limitParam = ctx.queryParam("limit");
+            if (limitParam != null) {
+                try {
+                    limit = Math.min(MAX_WINDOW_LIMIT, Integer.parseInt(limitParam));
+                } catch (NumberFormatException e) {
+                    userInterface.displayError(ctx, "limit must be a number", 400);
+                    return;
+                }
+            }
+            List<Event> events = database.getEventsInWindow(window, Math.max(0, limit));
+            if (events == null) {
+                userInterface.displayError(ctx, "window must be one of " + TimeIndex.WINDOWS, 400);
+                return;
+            }
+            userInterface.displayEventList(ctx, events);
+            return;
+        }
+
         List<Event> events = database.getEvents();
         userInterface.displayEventList(ctx, events);
     }
 
     // Story 2: Search Events
     public void handleSearch(Context ctx) {
+        Map<String, String> filters = readSearchFilters(ctx);
+        if (filters == null) {
+            return;
+        }
+
+        List<Event> events = database.searchEvents(filters);
+        userInterface.displayEventList(ctx, events);
+    }
+
+    // Counts per category, month and location for the same filters as search
+    public void handleFacets(Context ctx) {
+        Map<String, String> filters = readSearchFilters(ctx);
+        if (filters == null) {
+            return;
+        }
+
+        if (filters.values().stream().allMatch(value -> value.trim().isEmpty())) {
+            // No filters: served from the incrementally maintained counters
+            userInterface.displayFilters(ctx, database.getFacets(), database.getEventCount());
+            return;
+        }
+        List<Event> events = database.searchEvents(filters);
+        userInterface.displayFilters(ctx, FacetIndex.countFacets(events), events.size());
+    }
+
+    /**
+     * Events matching the search filters as CSV (/api/events/export.csv) or an
+     * iCalendar feed (/api/events/export.ics). Rows are streamed from a database
+     * cursor straight into the response, which is sent chunked. The ETag is a
+     * fingerprint of the matching events, so clients polling with If-None-Match
+     * get a 304 without any rows being read.
+     */
+    public void handleExport(Context ctx) {
+        Map<String, String> filters = readSearchFilters(ctx);
+        if (filters == null) {
+            return;
+        }
+        EventExporter exporter = ctx.path().endsWith(".ics") ? new IcsExporter() : new CsvExporter();
+
+        String tag = database.getExportTag(filters);
+        if (tag == null) {
+            userInterface.displayError(ctx, "Failed to export events", 500);
+            return;
+        }
+        String etag = "\"" + exporter.getFileName() + "-" + tag + "\"";
+        ctx.header("ETag", etag);
+        ctx.header("Cache-Control", "no-cache");
+        if (matchesETag(ctx.header("If-None-Match"), etag)) {
+            ctx.status(304);
+            return;
+        }
+
+        ctx.contentType(exporter.getContentType());
+        ctx.header("Content-Disposition", "attachment; filename=\"" + exporter.getFileName() + "\"");
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8));
+            exporter.begin(out);
+            boolean complete = database.streamEvents(filters, event -> exporter.write(out, event));
+            if (!complete && !ctx.res().isCommitted()) {
+                // Nothing has been sent yet, so the failure can still be reported properly
+                ctx.res().resetBuffer();
+                ctx.res().setHeader("Content-Disposition", null);
+                ctx.res().setHeader("ETag", null);
+                userInterface.displayError(ctx, "Failed to export events", 500);
+                return;
+            }
+            // After a failure mid-stream the response is cut short without the trailer
+            if (complete) {
+                exporter.end(out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away; the cursor is already closed
+            log.info("Event export aborted: {}", e.getMessage());
+        }
+    }
+
+    // If-None-Match holds "*" or a comma-separated list of (possibly weak) ETags
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Identifies the editable state of an event: the version changes with every edit
+    private static String eventETag(int eventId, int version) {
+        return "\"event-" + eventId + "-v" + version + "\"";
+    }
+
+    /**
+     * The version an If-Match header asks a write to apply to, or null for an
+     * unconditional write (no header, or "*"). A list of ETags may name one
+     * version of this event; weak ETags, other events' ETags and anything
+     * unparseable name none, and return 0, a version no event has, so the
+     * write fails with 412.
+     */
+    private static Integer expectedVersion(String ifMatch, int eventId) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String prefix = "\"event-" + eventId + "-v";
+        for (String candidate : ifMatch.split(",")) {
+            String etag = candidate.trim();
+            if (etag.startsWith(prefix) && etag.endsWith("\"") && etag.length() > prefix.length() + 1) {
+                try {
+                    return Integer.parseInt(etag.substring(prefix.length(), etag.length() - 1));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Search filters from the query string; responds 400 and returns null when one is invalid
+    private Map<String, String> readSearchFilters(Context ctx) {
         Map<String, String> filters = new HashMap<>();
         
         String keyword = ctx.queryParam("keyword");
@@ -51,8 +242,120 @@ public class Controller {
         if (date != null) filters.put("date", date);
         if (location != null) filters.put("location", location);
 
-        List<Event> events = database.searchEvents(filters);
-        userInterface.displayEventList(ctx, events);
+        // Typo-tolerant keyword matching: fuzzy=true
+        if ("true".equalsIgnoreCase(ctx.queryParam("fuzzy")) && keyword != null) filters.put("fuzzy", "true");
+
+        // Events near me: near=lat,lon with an optional radius in km
+        String near = ctx.queryParam("near");
+        String radius = ctx.queryParam("radius");
+        if (near != null) {
+            if (GeoIndex.parsePoint(near) == null) {
+                userInterface.displayError(ctx, "near must be latitude,longitude", 400);
+                return null;
+            }
+            filters.put("near", near);
+        }
+        if (radius != null) {
+            try {
+                if (Double.parseDouble(radius) <= 0) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                userInterface.displayError(ctx, "radius must be a positive number of km", 400);
+                return null;
+            }
+            filters.put("radius", radius);
+        }
+        return filters;
+    }
+
+    // Events with the most recent view and comment activity, hottest first
+    public void handleTrending(Context ctx) {
+        int limit = 10;
+        String limitParam = ctx.queryParam("limit");
+        if (limitParam != null) {
+            try {
+                limit = Math.max(1, Math.min(MAX_TRENDING_LIMIT, Integer.parseInt(limitParam)));
+            } catch (NumberFormatException e) {
+                userInterface.displayError(ctx, "limit must be a number", 400);
+                return;
+            }
+        }
+        List<Integer> ids = new ArrayList<>(activityTracker.trending(limit).keySet());
+        userInterface.displayEventList(ctx, database.getEventsByIds(ids));
+    }
+
+    // Typeahead suggestions for the search box
+    public void handleSuggest(Context ctx) {
+        String query = ctx.queryParam("q");
+        int limit = SuggestionIndex.MAX_SUGGESTIONS;
+        String limitParam = ctx.queryParam("limit");
+        if (limitParam != null) {
+            try {
+                limit = Math.min(SuggestionIndex.MAX_SUGGESTIONS, Integer.parseInt(limitParam));
+            } catch (NumberFormatException e) {
+                userInterface.displayError(ctx, "limit must be a number", 400);
+                return;
+            }
+        }
+        userInterface.displaySuggestions(ctx, database.suggest(query, limit));
+    }
+
+    // RSVP: POST marks the user as attending, DELETE cancels; both are idempotent
+    public void handleRsvp(Context ctx) {
+        Integer userId = getUserIdFromSession(ctx);
+
+        if (userId == null || !authenticate.isLoggedIn(userId)) {
+            userInterface.displayError(ctx, "Authentication required. Please log in.", 401);
+            return;
+        }
+
+        int eventId;
+        try {
+            eventId = Integer.parseInt(ctx.pathParam("id"));
+        } catch (NumberFormatException e) {
+            userInterface.displayError(ctx, "Invalid event ID", 400);
+            return;
+        }
+
+        if (database.getEventDetails(eventId) == null) {
+            userInterface.displayError(ctx, "Event not found", 404);
+            return;
+        }
+        if (!isOwnCommunity(userId, eventId)) {
+            userInterface.displayError(ctx, "You can only RSVP to events of your own community", 403);
+            return;
+        }
+
+        boolean attending = ctx.method() == HandlerType.POST;
+        boolean saved = attending
+                ? database.addRsvp(eventId, userId)
+                : database.removeRsvp(eventId, userId);
+        if (!saved) {
+            userInterface.displayError(ctx, "Failed to update RSVP", 500);
+            return;
+        }
+        userInterface.displayRsvp(ctx, eventId, attending, database.getRsvpCount(eventId));
+    }
+
+    // Whether the session user is attending, and the RSVP count; anonymous users are not attending
+    public void handleGetRsvp(Context ctx) {
+        int eventId;
+        try {
+            eventId = Integer.parseInt(ctx.pathParam("id"));
+        } catch (NumberFormatException e) {
+            userInterface.displayError(ctx, "Invalid event ID", 400);
+            return;
+        }
+
+        if (database.getEventDetails(eventId) == null) {
+            userInterface.displayError(ctx, "Event not found", 404);
+            return;
+        }
+
+        Integer userId = getUserIdFromSession(ctx);
+        boolean attending = userId != null && authenticate.isLoggedIn(userId) && database.hasRsvp(eventId, userId);
+        userInterface.displayRsvp(ctx, eventId, attending, database.getRsvpCount(eventId));
     }
 
     // Story 3: Manage Comments
@@ -76,10 +379,23 @@ public class Controller {
                     userInterface.displayError(ctx, "Comment text is required", 400);
                     return;
                 }
+                if (!isOwnCommunity(userId, eventId)) {
+                    userInterface.displayError(ctx, "You can only comment on events of your own community", 403);
+                    return;
+                }
 
                 User user = database.getUserById(userId);
-                database.saveComment(eventId, text, userId, user.getName());
+                Comment saved = database.saveComment(eventId, text, userId, user.getName());
+                if (saved == null) {
+                    userInterface.displayError(ctx, "Failed to add comment", 500);
+                    return;
+                }
+                activityTracker.recordComment(eventId);
+                auditLog.publish(AuditAction.COMMENT_CREATED, userId, saved.getId());
                 userInterface.displaySuccess(ctx, "Comment added successfully");
+            } catch (ServiceUnavailableException e) {
+                // Database unavailable: answered with 503 by the handler in Main
+                throw e;
             } catch (Exception e) {
                 userInterface.displayError(ctx, "Failed to add comment: " + e.getMessage(), 400);
             }
@@ -95,16 +411,8 @@ public class Controller {
                     return;
                 }
 
-                // Verify comment belongs to user - need to search all events
-                Comment comment = null;
-                for (Event event : database.getEvents()) {
-                    List<Comment> eventComments = database.getCommentsForEvent(event.getId());
-                    comment = eventComments.stream()
-                            .filter(c -> c.getId() == commentId)
-                            .findFirst()
-                            .orElse(null);
-                    if (comment != null) break;
-                }
+                // Verify comment belongs to user; archived events' comments are found too
+                Comment comment = database.getComment(commentId);
 
                 if (comment == null) {
                     userInterface.displayError(ctx, "Comment not found", 404);
@@ -116,8 +424,15 @@ public class Controller {
                     return;
                 }
 
-                database.editComment(commentId, text);
+                // Archived events are read-only, so their comments are not updated
+                if (database.editComment(commentId, text) == null) {
+                    userInterface.displayError(ctx, "Failed to edit comment", 400);
+                    return;
+                }
+                auditLog.publish(AuditAction.COMMENT_EDITED, userId, commentId);
                 userInterface.displaySuccess(ctx, "Comment updated successfully");
+            } catch (ServiceUnavailableException e) {
+                throw e;
             } catch (Exception e) {
                 userInterface.displayError(ctx, "Failed to edit comment: " + e.getMessage(), 400);
             }
@@ -126,16 +441,8 @@ public class Controller {
             try {
                 int commentId = Integer.parseInt(ctx.pathParam("id"));
 
-                // Verify comment belongs to user - need to search all events
-                Comment comment = null;
-                for (Event event : database.getEvents()) {
-                    List<Comment> eventComments = database.getCommentsForEvent(event.getId());
-                    comment = eventComments.stream()
-                            .filter(c -> c.getId() == commentId)
-                            .findFirst()
-                            .orElse(null);
-                    if (comment != null) break;
-                }
+                // Verify comment belongs to user; archived events' comments are found too
+                Comment comment = database.getComment(commentId);
 
                 if (comment == null) {
                     userInterface.displayError(ctx, "Comment not found", 404);
@@ -149,10 +456,13 @@ public class Controller {
 
                 boolean deleted = database.deleteComment(commentId);
                 if (deleted) {
+                    auditLog.publish(AuditAction.COMMENT_DELETED, userId, commentId);
                     userInterface.displaySuccess(ctx, "Comment deleted successfully");
                 } else {
                     userInterface.displayError(ctx, "Failed to delete comment", 400);
                 }
+            } catch (ServiceUnavailableException e) {
+                throw e;
             } catch (Exception e) {
                 userInterface.displayError(ctx, "Failed to delete comment: " + e.getMessage(), 400);
             }
@@ -192,6 +502,11 @@ public class Controller {
                 userInterface.displayError(ctx, "Event description is required", 400);
                 return;
             }
+            if ((eventData.getLatitude() != null || eventData.getLongitude() != null)
+                    && !GeoIndex.isValid(eventData.getLatitude(), eventData.getLongitude())) {
+                userInterface.displayError(ctx, "Event latitude and longitude must be given together and be valid coordinates", 400);
+                return;
+            }
 
             User user = database.getUserById(userId);
             eventData.setCreatorId(userId);
@@ -200,8 +515,14 @@ public class Controller {
             }
 
             Event createdEvent = database.saveEvent(eventData);
+            if (createdEvent != null) {
+                auditLog.publish(AuditAction.EVENT_CREATED, userId, createdEvent.getId());
+                ctx.header("ETag", eventETag(createdEvent.getId(), createdEvent.getVersion()));
+            }
             ctx.status(201);
             userInterface.displayEventDetails(ctx, createdEvent);
+        } catch (ServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             userInterface.displayError(ctx, "Failed to create event: " + e.getMessage(), 400);
         }
@@ -218,19 +539,7 @@ public class Controller {
 
         try {
             int eventId = Integer.parseInt(ctx.pathParam("id"));
-            Event existingEvent = database.getEventDetails(eventId);
-
-            if (existingEvent == null) {
-                userInterface.displayError(ctx, "Event not found", 404);
-                return;
-            }
-
-            // Verify user is the creator of the event
-            if (existingEvent.getCreatorId() != userId) {
-                userInterface.displayError(ctx, "You can only edit your own events", 403);
-                return;
-            }
-
+            Integer expectedVersion = expectedVersion(ctx.header("If-Match"), eventId);
             Event eventData = objectMapper.readValue(ctx.body(), Event.class);
 
             // Validate required fields
@@ -254,19 +563,39 @@ public class Controller {
                 userInterface.displayError(ctx, "Event description is required", 400);
                 return;
             }
+            if ((eventData.getLatitude() != null || eventData.getLongitude() != null)
+                    && !GeoIndex.isValid(eventData.getLatitude(), eventData.getLongitude())) {
+                userInterface.displayError(ctx, "Event latitude and longitude must be given together and be valid coordinates", 400);
+                return;
+            }
 
-            // Preserve creatorId - it cannot be changed
-            eventData.setCreatorId(existingEvent.getCreatorId());
             eventData.setId(eventId);
 
-            Event updatedEvent = database.updateEvent(eventId, eventData);
-            if (updatedEvent != null) {
-                userInterface.displayEventDetails(ctx, updatedEvent);
-            } else {
-                userInterface.displayError(ctx, "Failed to update event", 400);
+            // Only the creator may edit, which the update checks along with the version; creatorId cannot be changed
+            EventWriteResult result = database.updateEvent(eventId, userId, expectedVersion, eventData);
+            switch (result.getStatus()) {
+                case DONE:
+                    auditLog.publish(AuditAction.EVENT_UPDATED, userId, eventId);
+                    ctx.header("ETag", eventETag(eventId, result.getCurrentVersion()));
+                    userInterface.displayEventDetails(ctx, result.getEvent());
+                    break;
+                case NOT_FOUND:
+                    userInterface.displayError(ctx, "Event not found", 404);
+                    break;
+                case FORBIDDEN:
+                    userInterface.displayError(ctx, "You can only edit your own events", 403);
+                    break;
+                case CONFLICT:
+                    ctx.header("ETag", eventETag(eventId, result.getCurrentVersion()));
+                    userInterface.displayError(ctx, "Event was changed since you loaded it", 412);
+                    break;
+                default:
+                    userInterface.displayError(ctx, "Failed to update event", 400);
             }
         } catch (NumberFormatException e) {
             userInterface.displayError(ctx, "Invalid event ID", 400);
+        } catch (ServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             userInterface.displayError(ctx, "Failed to update event: " + e.getMessage(), 400);
         }
@@ -283,27 +612,32 @@ public class Controller {
 
         try {
             int eventId = Integer.parseInt(ctx.pathParam("id"));
-            Event event = database.getEventDetails(eventId);
-
-            if (event == null) {
-                userInterface.displayError(ctx, "Event not found", 404);
-                return;
-            }
-
-            // Verify user is the creator of the event
-            if (event.getCreatorId() != userId) {
-                userInterface.displayError(ctx, "You can only delete your own events", 403);
-                return;
-            }
-
-            boolean deleted = database.deleteEvent(eventId);
-            if (deleted) {
-                userInterface.displaySuccess(ctx, "Event deleted successfully");
-            } else {
-                userInterface.displayError(ctx, "Failed to delete event", 400);
+            Integer expectedVersion = expectedVersion(ctx.header("If-Match"), eventId);
+
+            // Only the creator may delete, which the delete checks along with the version
+            EventWriteResult result = database.deleteEvent(eventId, userId, expectedVersion);
+            switch (result.getStatus()) {
+                case DONE:
+                    auditLog.publish(AuditAction.EVENT_DELETED, userId, eventId);
+                    userInterface.displaySuccess(ctx, "Event deleted successfully");
+                    break;
+                case NOT_FOUND:
+                    userInterface.displayError(ctx, "Event not found", 404);
+                    break;
+                case FORBIDDEN:
+                    userInterface.displayError(ctx, "You can only delete your own events", 403);
+                    break;
+                case CONFLICT:
+                    ctx.header("ETag", eventETag(eventId, result.getCurrentVersion()));
+                    userInterface.displayError(ctx, "Event was changed since you loaded it", 412);
+                    break;
+                default:
+                    userInterface.displayError(ctx, "Failed to delete event", 400);
             }
         } catch (NumberFormatException e) {
             userInterface.displayError(ctx, "Invalid event ID", 400);
+        } catch (ServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             userInterface.displayError(ctx, "Failed to delete event: " + e.getMessage(), 500);
         }
@@ -325,6 +659,7 @@ public class Controller {
             if (user != null) {
                 // Store userId in session
                 ctx.sessionAttribute("userId", user.getUserId());
+                auditLog.publish(AuditAction.LOGIN, user.getUserId(), 0);
                 
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
@@ -332,8 +667,11 @@ public class Controller {
                 response.put("message", "Login successful");
                 ctx.json(response);
             } else {
+                auditLog.publish(AuditAction.LOGIN_FAILED, 0, 0);
                 userInterface.displayError(ctx, "Invalid credentials", 401);
             }
+        } catch (ServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             userInterface.displayError(ctx, "Login failed: " + e.getMessage(), 400);
         }
@@ -345,6 +683,7 @@ public class Controller {
         
         if (userId != null) {
             authenticate.logout(userId);
+            auditLog.publish(AuditAction.LOGOUT, userId, 0);
         }
         
         ctx.req().getSession().invalidate();
@@ -386,6 +725,7 @@ public class Controller {
             // Automatically log the user in
             authenticate.markUserAsLoggedIn(savedUser.getUserId());
             ctx.sessionAttribute("userId", savedUser.getUserId());
+            auditLog.publish(AuditAction.USER_REGISTERED, savedUser.getUserId(), savedUser.getUserId());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -396,11 +736,143 @@ public class Controller {
         } catch (IllegalArgumentException e) {
             // Email already exists error from database
             userInterface.displayError(ctx, e.getMessage(), 400);
+        } catch (ServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             userInterface.displayError(ctx, "Registration failed: " + e.getMessage(), 400);
         }
     }
 
+    // Audit pipeline counters: drops, failures and consumer lag
+    public void handleAuditStats(Context ctx) {
+        ctx.json(auditLog.getStats());
+    }
+
+    // Circuit breaker and bulkhead state of the database connections
+    public void handleDatabaseStats(Context ctx) {
+        ctx.json(database.getDatabaseStats());
+    }
+
+    // Admission slots in use, queue depths and shed requests per priority class
+    public void handleAdmissionStats(Context ctx) {
+        ctx.json(admissionController.getStats());
+    }
+
+    // Error counts by type, including errors whose logging was rate-limited
+    public void handleErrorStats(Context ctx) {
+        ctx.json(ErrorReporter.getCounts());
+    }
+
+    // Health: the process is up and serving HTTP
+    public void handleLiveness(Context ctx) {
+        userInterface.displayHealth(ctx, "UP", 200);
+    }
+
+    // Health: warm-up has finished and the instance can take traffic
+    public void handleReadiness(Context ctx) {
+        if (ServerLifecycle.getInstance().isReady()) {
+            userInterface.displayHealth(ctx, "READY", 200);
+        } else {
+            userInterface.displayHealth(ctx, "NOT_READY", 503);
+        }
+    }
+
+    // Exercise request parsing and response serialization of the models once before taking traffic
+    public void primeSerializers() {
+        try {
+            Event event = new Event(0, "Warm-up", "Warm-up event", "2025-01-01", "10:00 AM", "Nowhere", "Community", "Warm-up", 0);
+            Comment comment = new Comment(0, 0, 0, "Warm-up", "Warm-up");
+            User user = new User(0, "Warm-up", "warmup@example.com", "");
+            objectMapper.readValue(objectMapper.writeValueAsString(event), Event.class);
+            objectMapper.readValue(objectMapper.writeValueAsString(comment), Comment.class);
+            objectMapper.writeValueAsString(user);
+            objectMapper.readValue("{\"email\":\"warmup@example.com\"}", new TypeReference<Map<String, String>>() {});
+        } catch (Exception e) {
+            log.warn("Error priming serializers: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Binds the session user to the request thread so reads after their own
+     * writes go to the primary, and the community whose shard serves the
+     * request: the X-Community header or community parameter, else the
+     * session user's own community, else the default one. community=all is
+     * only taken by the listings that merge every shard.
+     */
+    public void bindRequestContext(Context ctx) {
+        Integer userId = null;
+        HttpSession session = ctx.req().getSession(false);
+        if (session != null && session.getAttribute("userId") instanceof Number) {
+            userId = ((Number) session.getAttribute("userId")).intValue();
+        }
+        connectionManager.bindRequestUser(userId);
+
+        String community = ctx.header("X-Community");
+        if (community == null || community.trim().isEmpty()) {
+            community = ctx.queryParam("community");
+        }
+        if (community == null || community.trim().isEmpty()) {
+            community = userId != null ? connectionManager.communityOfId(userId) : connectionManager.getDefaultCommunity();
+        }
+        community = community.trim().toLowerCase();
+        if (DatabaseConnectionManager.ALL_COMMUNITIES.equals(community)) {
+            if (ctx.method() != HandlerType.GET || !ALL_COMMUNITY_PATHS.contains(ctx.path())) {
+                throw new BadRequestResponse("community=all is only supported when listing, searching or exporting events");
+            }
+            if (connectionManager.getCommunities().size() == 1) {
+                community = connectionManager.getDefaultCommunity();
+            }
+        } else if (!connectionManager.hasCommunity(community)) {
+            throw new BadRequestResponse("Unknown community: " + community);
+        }
+        connectionManager.bindRequestCommunity(community);
+    }
+
+    public void clearRequestContext(Context ctx) {
+        connectionManager.bindRequestUser(null);
+        connectionManager.bindRequestCommunity(null);
+    }
+
+    // Waits for an admission slot for the request's class; shed requests get a 503
+    public void admitRequest(Context ctx) {
+        AdmissionController.Priority priority = priorityOf(ctx);
+        if (priority == null) {
+            return;
+        }
+        admissionController.admit(priority);
+        ctx.attribute("admission", priority);
+    }
+
+    public void finishRequest(Context ctx) {
+        AdmissionController.Priority priority = ctx.attribute("admission");
+        if (priority != null) {
+            admissionController.release(priority);
+        }
+    }
+
+    // Sign-ins and writes are critical, single events and their comments interactive,
+    // and listings, searches and exports bulk; CORS preflights are not queued at all
+    private static AdmissionController.Priority priorityOf(Context ctx) {
+        if (ctx.method() == HandlerType.OPTIONS) {
+            return null;
+        }
+        String path = ctx.path();
+        if (path.startsWith("/api/auth/") || ctx.method() != HandlerType.GET) {
+            return AdmissionController.Priority.CRITICAL;
+        }
+        if (path.equals("/api/events") || path.equals("/api/events/search") || path.equals("/api/events/facets")
+                || path.startsWith("/api/events/export.") || path.equals("/api/events/trending")) {
+            return AdmissionController.Priority.BULK;
+        }
+        return AdmissionController.Priority.INTERACTIVE;
+    }
+
+    // Accounts belong to one community, and RSVPs and comments reference them, so
+    // users can only take part in the events of their own community
+    private boolean isOwnCommunity(int userId, int eventId) {
+        return connectionManager.communityOfId(userId).equals(connectionManager.communityOfId(eventId));
+    }
+
     // Helper method to get userId from session
     private Integer getUserIdFromSession(Context ctx) {
         Object userIdObj = ctx.sessionAttribute("userId");
@@ -420,10 +892,18 @@ public class Controller {
             if (event == null) {
                 userInterface.displayError(ctx, "Event not found", 404);
             } else {
+                // Synthetic warm-up traffic must not make events trend
+                if (!WarmUp.isWarmUpRequest(ctx.header(WarmUp.HEADER))) {
+                    activityTracker.recordView(eventId);
+                }
+                // For If-Match on edits; RSVP counts change without changing it, so no 304s
+                ctx.header("ETag", eventETag(eventId, event.getVersion()));
                 userInterface.displayEventDetails(ctx, event);
             }
         } catch (NumberFormatException e) {
             userInterface.displayError(ctx, "Invalid event ID", 400);
+        } catch (ServiceUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             userInterface.displayError(ctx, "Failed to get event details: " + e.getMessage(), 500);
         }
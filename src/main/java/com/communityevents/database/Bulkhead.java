@@ -0,0 +1,46 @@
+package com.communityevents.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Caps how many threads use the database for one kind of work at a time
+class Bulkhead {
+    private final int limit;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final LongAdder rejected = new LongAdder();
+
+    Bulkhead(int limit, long maxWaitMillis) {
+        this.limit = limit;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(limit);
+    }
+
+    // Waits at most maxWaitMillis, or budgetMillis if that is shorter, for a free slot
+    boolean tryAcquire(long budgetMillis) {
+        try {
+            if (permits.tryAcquire(Math.min(maxWaitMillis, budgetMillis), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        return false;
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", limit);
+        stats.put("inUse", limit - permits.availablePermits());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
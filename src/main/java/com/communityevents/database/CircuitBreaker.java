@@ -0,0 +1,165 @@
+package com.communityevents.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fails database calls fast while the database is failing or slow.
+ *
+ * CLOSED: calls go through and their outcomes fill a window of the last
+ * windowSize calls. Once at least minimumCalls are recorded and the share of
+ * failed calls reaches failureRatePercent, or the share of calls slower than
+ * slowCallMillis reaches slowRatePercent, the breaker opens.
+ * OPEN: calls are rejected for openMillis.
+ * HALF_OPEN: up to probeCalls calls are let through as probes. If they all
+ * succeed quickly the breaker closes with an empty window; the first failed
+ * or slow probe opens it again.
+ */
+class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // How a call was admitted
+    enum Permit { CALL, PROBE }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final int slowRatePercent;
+    private final long slowCallMillis;
+    private final long openMillis;
+    private final int probeCalls;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probesSucceeded;
+
+    // Ring of the outcomes of the last windowSize calls
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int position;
+    private int recorded;
+    private int failedCount;
+    private int slowCount;
+
+    private final LongAdder rejected = new LongAdder();
+    private long timesOpened;
+
+    CircuitBreaker(int windowSize, int minimumCalls, int failureRatePercent, int slowRatePercent,
+                   long slowCallMillis, long openMillis, int probeCalls) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRatePercent = failureRatePercent;
+        this.slowRatePercent = slowRatePercent;
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.probeCalls = probeCalls;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    // Returns null when the call must be rejected
+    Permit acquire() {
+        if (state == State.CLOSED) {
+            return Permit.CALL;
+        }
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return Permit.CALL;
+            }
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN && probesInFlight + probesSucceeded < probeCalls) {
+                probesInFlight++;
+                return Permit.PROBE;
+            }
+        }
+        rejected.increment();
+        return null;
+    }
+
+    // Gives back a permit whose call never reached the database
+    synchronized void release(Permit permit) {
+        if (permit == Permit.PROBE && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    synchronized void onResult(Permit permit, boolean callFailed, long durationMillis) {
+        boolean callSlow = slowCallMillis > 0 && durationMillis >= slowCallMillis;
+        if (permit == Permit.PROBE) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            probesInFlight--;
+            if (callFailed || callSlow) {
+                open();
+            } else if (++probesSucceeded >= probeCalls) {
+                close();
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            // Started before the breaker opened
+            return;
+        }
+        if (recorded == windowSize) {
+            failedCount -= failed[position] ? 1 : 0;
+            slowCount -= slow[position] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[position] = callFailed;
+        slow[position] = callSlow;
+        failedCount += callFailed ? 1 : 0;
+        slowCount += callSlow ? 1 : 0;
+        position = (position + 1) % windowSize;
+
+        if (recorded >= minimumCalls && (failedCount * 100 >= failureRatePercent * recorded
+                || slowCount * 100 >= slowRatePercent * recorded)) {
+            open();
+        }
+    }
+
+    // Seconds until the breaker lets probes through, at least 1
+    synchronized int getRetryAfterSeconds() {
+        if (state != State.OPEN) {
+            return 1;
+        }
+        long remaining = openMillis - (System.currentTimeMillis() - openedAt);
+        return (int) Math.max(1, (remaining + 999) / 1000);
+    }
+
+    State getState() {
+        return state;
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("recentCalls", recorded);
+        stats.put("recentFailures", failedCount);
+        stats.put("recentSlowCalls", slowCount);
+        stats.put("timesOpened", timesOpened);
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        timesOpened++;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failedCount = 0;
+        slowCount = 0;
+    }
+}
@@ -0,0 +1,240 @@
+package com.communityevents.database;
+
+import com.communityevents.model.Comment;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Group commit for comment inserts.
+ *
+ * Callers enqueue pending comments; a single committer thread drains up to
+ * maxBatchSize of them, waiting at most maxWaitMicros for the batch to fill,
+ * and writes them with one multi-row INSERT ... RETURNING. Each caller's future
+ * is completed with its own generated row.
+ *
+ * Connections come from the shard's GuardedConnections, so batches share the
+ * write bulkhead and circuit breaker with the request path: while the
+ * database is unavailable the queued comments fail at once instead of waiting
+ * out the pool.
+ */
+class CommentBatcher {
+    private static final Logger log = LoggerFactory.getLogger(CommentBatcher.class);
+    private static final String RETURNING = " RETURNING id, event_id, user_id, text, user_name, timestamp";
+
+    interface RowMapper {
+        Comment map(ResultSet rs) throws SQLException;
+    }
+
+    private static class PendingComment {
+        final int eventId;
+        final int userId;
+        final String text;
+        final String userName;
+        final CompletableFuture<Comment> result = new CompletableFuture<>();
+
+        PendingComment(int eventId, int userId, String text, String userName) {
+            this.eventId = eventId;
+            this.userId = userId;
+            this.text = text;
+            this.userName = userName;
+        }
+
+        boolean matches(Comment comment) {
+            return comment.getEventId() == eventId && comment.getUserId() == userId
+                    && Objects.equals(text, comment.getText()) && Objects.equals(userName, comment.getUserName());
+        }
+    }
+
+    private final GuardedConnections.ConnectionSource connections;
+    private final RowMapper rowMapper;
+    private final BlockingQueue<PendingComment> queue;
+    private final int maxBatchSize;
+    private final long maxWaitMicros;
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    CommentBatcher(GuardedConnections.ConnectionSource connections, String community, RowMapper rowMapper,
+                   int queueCapacity, int maxBatchSize, long maxWaitMicros) {
+        this.connections = connections;
+        this.rowMapper = rowMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMicros = maxWaitMicros;
+        this.committer = new Thread(this::run, "comment-committer-" + community);
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    // Batches the comments of one community's shard; returns null when group commit is disabled (COMMENT_GROUP_COMMIT is not "true")
+    static CommentBatcher fromEnvironment(GuardedConnections connections, String community, RowMapper rowMapper) {
+        if (!"true".equalsIgnoreCase(System.getenv("COMMENT_GROUP_COMMIT"))) {
+            return null;
+        }
+        int queueCapacity = intFromEnvironment("COMMENT_QUEUE_CAPACITY", 1024);
+        int maxBatchSize = intFromEnvironment("COMMENT_BATCH_MAX", 64);
+        int maxWaitMicros = intFromEnvironment("COMMENT_BATCH_WAIT_MICROS", 2000);
+        return new CommentBatcher(connections::writeConnection, community, rowMapper,
+                queueCapacity, maxBatchSize, maxWaitMicros);
+    }
+
+    private static int intFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Enqueues a comment for the next batch. Returns null when the queue is full
+     * or the batcher is shut down, in which case the caller should insert directly.
+     */
+    CompletableFuture<Comment> submit(int eventId, int userId, String text, String userName) {
+        if (!running) {
+            return null;
+        }
+        PendingComment pending = new PendingComment(eventId, userId, text, userName);
+        return queue.offer(pending) ? pending.result : null;
+    }
+
+    private void run() {
+        List<PendingComment> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingComment first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingComment next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                // close() interrupts a waiting committer; flush what was collected and keep draining
+                commit(batch);
+            } catch (RuntimeException e) {
+                // Includes DatabaseUnavailableException from an open breaker or a full bulkhead
+                for (PendingComment pending : batch) {
+                    pending.result.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Anything that raced with close() is handed back to its caller to insert directly
+        PendingComment late;
+        while ((late = queue.poll()) != null) {
+            late.result.completeExceptionally(new RejectedExecutionException("Comment batcher is closed"));
+        }
+    }
+
+    private void commit(List<PendingComment> batch) {
+        // Callers that gave up waiting (their request ran out of time) have cancelled theirs
+        batch.removeIf(pending -> pending.result.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            insertBatch(batch);
+        } catch (SQLException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            // One bad row (e.g. a comment on a deleted event) fails the whole statement;
+            // retry individually so only that caller sees the error
+            for (PendingComment pending : batch) {
+                try {
+                    insertBatch(List.of(pending));
+                } catch (SQLException single) {
+                    pending.result.completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void insertBatch(List<PendingComment> batch) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO comments (event_id, user_id, text, user_name) VALUES ");
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+        sql.append(RETURNING);
+
+        List<Comment> inserted = new ArrayList<>(batch.size());
+        try (Connection conn = connections.get();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+
+            int index = 1;
+            for (PendingComment pending : batch) {
+                stmt.setInt(index++, pending.eventId);
+                stmt.setInt(index++, pending.userId);
+                stmt.setString(index++, pending.text);
+                stmt.setString(index++, pending.userName);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    inserted.add(rowMapper.map(rs));
+                }
+            }
+        }
+
+        // RETURNING order is not guaranteed to follow VALUES order, so pair rows by content
+        for (PendingComment pending : batch) {
+            Comment match = null;
+            for (int i = 0; i < inserted.size(); i++) {
+                if (pending.matches(inserted.get(i))) {
+                    match = inserted.remove(i);
+                    break;
+                }
+            }
+            if (match != null) {
+                pending.result.complete(match);
+            } else {
+                pending.result.completeExceptionally(new SQLException("Inserted comment row not returned"));
+            }
+        }
+    }
+
+    // Stops accepting comments and waits for the queued ones to be committed
+    void close(long timeoutMillis) {
+        running = false;
+        committer.interrupt();
+        try {
+            committer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
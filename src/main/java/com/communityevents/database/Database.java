@@ -1,19 +1,100 @@
 package com.communityevents.database;
 
+import com.communityevents.activity.ActivityTracker;
+import com.communityevents.audit.AuditRecord;
+import com.communityevents.database.embedded.EmbeddedStore;
+import com.communityevents.json.EventJsonCache;
+import com.communityevents.lifecycle.Deadline;
+import com.communityevents.lifecycle.DeadlineExceededException;
+import com.communityevents.lifecycle.ServiceUnavailableException;
+import com.communityevents.logging.ErrorReporter;
 import com.communityevents.model.Event;
 import com.communityevents.model.Comment;
 import com.communityevents.model.User;
+import com.communityevents.search.EventIndexes;
+import com.communityevents.search.FacetCount;
+import com.communityevents.search.FacetIndex;
+import com.communityevents.search.GeoIndex;
+import com.communityevents.search.Suggestion;
+import com.communityevents.search.TrigramIndex;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Database {
+    private static final Logger log = LoggerFactory.getLogger(Database.class);
+    private static final ErrorReporter errors = ErrorReporter.forClass(Database.class);
+    private static final double DEFAULT_RADIUS_KM = 10;
+    private static final int EXPORT_FETCH_SIZE = 500;
+    // Same order as ORDER BY date, time, id on the VARCHAR columns
+    private static final Comparator<Event> EXPORT_ORDER = Comparator
+            .comparing(Event::getDate, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+            .thenComparing(Event::getTime, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+            .thenComparingInt(Event::getId);
+    static final String EVENT_COLUMNS = "id, title, description, date, time, location, category, organizer, creator_id, latitude, longitude, rsvp_count, version";
+
     private static Database instance;
     private DatabaseConnectionManager connectionManager;
-    private boolean initialized = false;
+    // One of each per community shard; the maps stay empty in embedded mode
+    private final Map<String, GuardedConnections> shardConnections = new HashMap<>();
+    private final Map<String, CommentBatcher> commentBatchers = new HashMap<>();
+    private final Map<String, EventIndexes> eventIndexes = new HashMap<>();
+    private SearchCoalescer searchCoalescer;
+    private RsvpCounter rsvpCounter;
+    private EventArchiver eventArchiver;
+    private ScheduledExecutorService facetRefresher;
+    // Runs the per-shard queries of listings over all communities; null with a single shard
+    private ExecutorService shardQueries;
+    private EmbeddedStore embeddedStore;
 
     private Database() {
+        long start = System.nanoTime();
         this.connectionManager = DatabaseConnectionManager.getInstance();
-        initializeSchema();
+        this.searchCoalescer = new SearchCoalescer(connectionManager.getReadYourWritesMillis());
+        if (DatabaseConnectionManager.isEmbeddedMode()) {
+            this.embeddedStore = openEmbeddedStore(connectionManager.getDefaultCommunity());
+            log.info("Embedded store opened in {} ms", elapsedMillis(start));
+        } else {
+            log.info("Connection pool started in {} ms", elapsedMillis(start));
+            for (String community : connectionManager.getCommunities()) {
+                GuardedConnections connections = GuardedConnections.fromEnvironment(connectionManager, community);
+                shardConnections.put(community, connections);
+                CommentBatcher batcher = CommentBatcher.fromEnvironment(connections, community,
+                        this::mapResultSetToComment);
+                if (batcher != null) {
+                    commentBatchers.put(community, batcher);
+                }
+                initializeSchema(community);
+            }
+            this.rsvpCounter = startRsvpCounter();
+            if (connectionManager.getCommunities().size() > 1) {
+                this.shardQueries = Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "shard-query");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        for (String community : connectionManager.getCommunities()) {
+            eventIndexes.put(community, new EventIndexes());
+            rebuildIndexes(community);
+        }
+        if (embeddedStore == null) {
+            this.facetRefresher = startFacetRefresher();
+            // Archived events leave the live tables, so the indexes forget them as if deleted
+            this.eventArchiver = EventArchiver.fromEnvironment(connectionManager, this::onEventDeleted);
+        }
     }
 
     public static synchronized Database getInstance() {
@@ -23,282 +104,902 @@ public class Database {
         return instance;
     }
 
-    private void initializeSchema() {
-        if (initialized) {
-            return;
+    private static EmbeddedStore openEmbeddedStore(String community) {
+        try {
+            return EmbeddedStore.openFromEnvironment(community);
+        } catch (IOException e) {
+            errors.report("Error opening embedded store", e);
+            throw new RuntimeException("Failed to open embedded store", e);
         }
+    }
 
-        try (Connection conn = connectionManager.getConnection()) {
-            // Read schema.sql and execute it
-            String schema = 
-                "CREATE TABLE IF NOT EXISTS users (" +
-                    "user_id SERIAL PRIMARY KEY, " +
-                    "name VARCHAR(255) NOT NULL, " +
-                    "email VARCHAR(255) UNIQUE NOT NULL, " +
-                    "password VARCHAR(255) NOT NULL, " +
-                    "is_logged_in BOOLEAN DEFAULT FALSE" +
-                "); " +
-                "CREATE TABLE IF NOT EXISTS events (" +
-                    "id SERIAL PRIMARY KEY, " +
-                    "title VARCHAR(255) NOT NULL, " +
-                    "description TEXT NOT NULL, " +
-                    "date VARCHAR(50) NOT NULL, " +
-                    "time VARCHAR(50) NOT NULL, " +
-                    "location VARCHAR(255) NOT NULL, " +
-                    "category VARCHAR(100), " +
-                    "organizer VARCHAR(255), " +
-                    "creator_id INTEGER REFERENCES users(user_id) ON DELETE SET NULL" +
-                "); " +
-                "CREATE TABLE IF NOT EXISTS comments (" +
-                    "id SERIAL PRIMARY KEY, " +
-                    "event_id INTEGER NOT NULL REFERENCES events(id) ON DELETE CASCADE, " +
-                    "user_id INTEGER NOT NULL REFERENCES users(user_id) ON DELETE CASCADE, " +
-                    "text TEXT NOT NULL, " +
-                    "user_name VARCHAR(255) NOT NULL, " +
-                    "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                "); " +
-                "CREATE INDEX IF NOT EXISTS idx_users_email ON users(email); " +
-                "CREATE INDEX IF NOT EXISTS idx_events_creator_id ON events(creator_id); " +
-                "CREATE INDEX IF NOT EXISTS idx_events_category ON events(category); " +
-                "CREATE INDEX IF NOT EXISTS idx_events_date ON events(date); " +
-                "CREATE INDEX IF NOT EXISTS idx_comments_event_id ON comments(event_id); " +
-                "CREATE INDEX IF NOT EXISTS idx_comments_user_id ON comments(user_id);";
-
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute(schema);
-            }
-
-            // Initialize sample data if tables are empty
-            initializeSampleData(conn);
-            initialized = true;
+    private void initializeSchema(String community) {
+        long start = System.nanoTime();
+        try {
+            int applied = new MigrationRunner(connectionManager, community).migrate();
+            log.info("Schema of {} {} in {} ms", community,
+                    applied == 0 ? "is current" : "migrated (" + applied + " applied)", elapsedMillis(start));
         } catch (SQLException e) {
-            System.err.println("Error initializing database schema: " + e.getMessage());
-            e.printStackTrace();
+            errors.report("Error initializing database schema of " + community, e);
             throw new RuntimeException("Failed to initialize database", e);
         }
     }
 
-    private void initializeSampleData(Connection conn) {
+    private RsvpCounter startRsvpCounter() {
+        RsvpCounter counter = RsvpCounter.fromEnvironment(connectionManager);
         try {
-            // Check if users table is empty
-            try (PreparedStatement checkStmt = conn.prepareStatement("SELECT COUNT(*) FROM users")) {
-                ResultSet rs = checkStmt.executeQuery();
-                if (rs.next() && rs.getInt(1) > 0) {
-                    return; // Data already exists
-                }
-            }
-
-            // Insert sample users
-            try (PreparedStatement userStmt = conn.prepareStatement(
-                    "INSERT INTO users (name, email, password, is_logged_in) VALUES (?, ?, ?, ?) RETURNING user_id")) {
-                
-                // User 1
-                userStmt.setString(1, "John Doe");
-                userStmt.setString(2, "john@example.com");
-                userStmt.setString(3, "password123");
-                userStmt.setBoolean(4, false);
-                userStmt.execute();
-                ResultSet rs1 = userStmt.getResultSet();
-                rs1.next();
-                int userId1 = rs1.getInt(1);
-
-                // User 2
-                userStmt.setString(1, "Jane Smith");
-                userStmt.setString(2, "jane@example.com");
-                userStmt.setString(3, "password123");
-                userStmt.setBoolean(4, false);
-                userStmt.execute();
-                ResultSet rs2 = userStmt.getResultSet();
-                rs2.next();
-                int userId2 = rs2.getInt(1);
-
-                // User 3
-                userStmt.setString(1, "Bob Johnson");
-                userStmt.setString(2, "bob@example.com");
-                userStmt.setString(3, "password123");
-                userStmt.setBoolean(4, false);
-                userStmt.execute();
-                ResultSet rs3 = userStmt.getResultSet();
-                rs3.next();
-                int userId3 = rs3.getInt(1);
-
-                // Insert sample events
-                try (PreparedStatement eventStmt = conn.prepareStatement(
-                        "INSERT INTO events (title, description, date, time, location, category, organizer, creator_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING id")) {
-                    
-                    // Event 1
-                    eventStmt.setString(1, "Neighborhood Cleanup");
-                    eventStmt.setString(2, "Join us for a community cleanup day!");
-                    eventStmt.setString(3, "2025-05-12");
-                    eventStmt.setString(4, "10:00 AM");
-                    eventStmt.setString(5, "City Park");
-                    eventStmt.setString(6, "Community");
-                    eventStmt.setString(7, "John Doe");
-                    eventStmt.setInt(8, userId1);
-                    eventStmt.execute();
-
-                    // Event 2
-                    eventStmt.setString(1, "Farmers Market");
-                    eventStmt.setString(2, "Local vendors, produce, and crafts!");
-                    eventStmt.setString(3, "2025-05-13");
-                    eventStmt.setString(4, "8:00 AM");
-                    eventStmt.setString(5, "Main Street");
-                    eventStmt.setString(6, "Market");
-                    eventStmt.setString(7, "Jane Smith");
-                    eventStmt.setInt(8, userId2);
-                    eventStmt.execute();
-                    ResultSet evtRs2 = eventStmt.getResultSet();
-                    evtRs2.next();
-                    int eventId2 = evtRs2.getInt(1);
-
-                    // Event 3
-                    eventStmt.setString(1, "Yoga in the Park");
-                    eventStmt.setString(2, "Free yoga session for all levels");
-                    eventStmt.setString(3, "2025-05-14");
-                    eventStmt.setString(4, "9:00 AM");
-                    eventStmt.setString(5, "City Park");
-                    eventStmt.setString(6, "Fitness");
-                    eventStmt.setString(7, "Bob Johnson");
-                    eventStmt.setInt(8, userId3);
-                    eventStmt.execute();
-
-                    // Event 4
-                    eventStmt.setString(1, "Art Workshop");
-                    eventStmt.setString(2, "Learn painting techniques from local artists");
-                    eventStmt.setString(3, "2025-05-15");
-                    eventStmt.setString(4, "5:00 PM");
-                    eventStmt.setString(5, "Community Center");
-                    eventStmt.setString(6, "Art");
-                    eventStmt.setString(7, "Jane Smith");
-                    eventStmt.setInt(8, userId2);
-                    eventStmt.execute();
-
-                    // Insert sample comments
-                    try (PreparedStatement commentStmt = conn.prepareStatement(
-                            "INSERT INTO comments (event_id, user_id, text, user_name) VALUES (?, ?, ?, ?)")) {
-                        
-                        commentStmt.setInt(1, eventId2);
-                        commentStmt.setInt(2, userId1);
-                        commentStmt.setString(3, "Can't wait for this event!");
-                        commentStmt.setString(4, "John Doe");
-                        commentStmt.execute();
-
-                        commentStmt.setInt(1, eventId2);
-                        commentStmt.setInt(2, userId3);
-                        commentStmt.setString(3, "Will there be parking nearby?");
-                        commentStmt.setString(4, "Bob Johnson");
-                        commentStmt.execute();
-                    }
+            counter.reconcileAll();
+        } catch (SQLException e) {
+            errors.report("Error reconciling RSVP counts", e);
+        }
+        return counter;
+    }
+
+    private void rebuildIndexes(String community) {
+        long start = System.nanoTime();
+        List<Event> events = getEvents(community);
+        indexesOf(community).rebuild(events);
+        log.info("Indexed {} events of {} in {} ms", events.size(), community, elapsedMillis(start));
+    }
+
+    // Periodically recounts facets with a GROUP BY (FACET_REFRESH_MS, default 60000, 0 disables)
+    private ScheduledExecutorService startFacetRefresher() {
+        long intervalMillis = 60000;
+        String interval = System.getenv("FACET_REFRESH_MS");
+        if (interval != null && !interval.isEmpty()) {
+            try {
+                intervalMillis = Long.parseLong(interval.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid FACET_REFRESH_MS: {}", interval);
+            }
+        }
+        if (intervalMillis <= 0) {
+            return null;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "facet-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            for (String community : connectionManager.getCommunities()) {
+                refreshFacets(community);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    // Corrects the in-memory facet counters from the table, e.g. after writes made by other nodes
+    public void refreshFacets(String community) {
+        if (embeddedStore != null) {
+            // Every write goes through this process, so the counters cannot drift
+            return;
+        }
+        String sql = "SELECT GROUPING(category) AS by_category, GROUPING(LEFT(date, 7)) AS by_month, " +
+                "GROUPING(location) AS by_location, category, LEFT(date, 7) AS month, location, COUNT(*) AS total " +
+                "FROM events GROUP BY GROUPING SETS ((category), (LEFT(date, 7)), (location), ())";
+        FacetIndex facetIndex = indexesOf(community).facets();
+        long generation = facetIndex.getGeneration();
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+        for (String facet : FacetIndex.FACETS) {
+            counts.put(facet, new HashMap<>());
+        }
+        int total = 0;
+
+        // From the primary, through the shard's guards: counts read from a lagging replica
+        // would replace newer ones and stay wrong until the next write
+        try (Connection conn = connectionsOf(community).primaryReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                String facet;
+                String value;
+                if (rs.getInt("by_category") == 0) {
+                    facet = FacetIndex.CATEGORY;
+                    value = rs.getString("category");
+                } else if (rs.getInt("by_month") == 0) {
+                    facet = FacetIndex.MONTH;
+                    value = rs.getString("month");
+                } else if (rs.getInt("by_location") == 0) {
+                    facet = FacetIndex.LOCATION;
+                    value = rs.getString("location");
+                } else {
+                    // The empty grouping set: all events
+                    total = rs.getInt("total");
+                    continue;
+                }
+                if (value != null && !value.trim().isEmpty()) {
+                    counts.get(facet).put(value, rs.getInt("total"));
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error initializing sample data: " + e.getMessage());
-            // Don't throw - sample data is optional
+        } catch (SQLException | DatabaseUnavailableException e) {
+            // Also caught when the breaker is open, so the scheduled refresh keeps running
+            errors.report("Error refreshing facet counts of " + community, e);
+            return;
         }
+
+        facetIndex.replaceCounts(counts, total, generation);
+    }
+
+    // Flushes background writers; called during shutdown once requests have drained
+    public void shutdown(long timeoutMillis) {
+        if (facetRefresher != null) {
+            facetRefresher.shutdownNow();
+        }
+        if (eventArchiver != null) {
+            eventArchiver.close();
+        }
+        for (CommentBatcher batcher : commentBatchers.values()) {
+            batcher.close(timeoutMillis);
+        }
+        if (rsvpCounter != null) {
+            rsvpCounter.close();
+        }
+        if (shardQueries != null) {
+            shardQueries.shutdownNow();
+        }
+        if (embeddedStore != null) {
+            try {
+                embeddedStore.close();
+            } catch (IOException e) {
+                errors.report("Error closing embedded store", e);
+            }
+        }
+    }
+
+    // Circuit breaker state and bulkhead usage, for GET /health/database; per community when sharded
+    public Map<String, Object> getDatabaseStats() {
+        if (shardConnections.isEmpty()) {
+            return Map.of("mode", "embedded");
+        }
+        Map<String, Object> stats;
+        if (shardConnections.size() == 1) {
+            stats = new LinkedHashMap<>(connectionsOf(connectionManager.getDefaultCommunity()).getStats());
+        } else {
+            Map<String, Object> shards = new LinkedHashMap<>();
+            for (String community : connectionManager.getCommunities()) {
+                shards.put(community, connectionsOf(community).getStats());
+            }
+            stats = new LinkedHashMap<>();
+            stats.put("shards", shards);
+        }
+        if (eventArchiver != null) {
+            stats.put("archive", eventArchiver.getStats());
+        }
+        return stats;
+    }
+
+    // Connections of the request's community
+    private GuardedConnections connections() {
+        return connectionsOf(connectionManager.getRequestCommunity());
+    }
+
+    // Connections of the shard that holds the event, comment or user with this id
+    private GuardedConnections connectionsFor(int id) {
+        return connectionsOf(connectionManager.communityOfId(id));
+    }
+
+    private GuardedConnections connectionsOf(String community) {
+        GuardedConnections connections = shardConnections.get(community);
+        if (connections == null) {
+            throw new IllegalStateException("No single shard for community " + community);
+        }
+        return connections;
+    }
+
+    private EventIndexes indexes() {
+        return indexesOf(connectionManager.getRequestCommunity());
+    }
+
+    private EventIndexes indexesOf(String community) {
+        EventIndexes indexes = eventIndexes.get(community);
+        if (indexes == null) {
+            throw new IllegalStateException("No single shard for community " + community);
+        }
+        return indexes;
+    }
+
+    // Whether the request lists events of every community at once
+    private boolean spansAllCommunities() {
+        return shardQueries != null
+                && DatabaseConnectionManager.ALL_COMMUNITIES.equals(connectionManager.getRequestCommunity());
+    }
+
+    /**
+     * Logs a failed statement. When the database itself is unavailable, or
+     * the statement was cancelled at the request's deadline, the failure
+     * becomes a 503 instead of the caller's empty result.
+     */
+    private void reportFailure(String message, SQLException e) {
+        if (Deadline.isSet() && Deadline.isExpired()) {
+            throw new DeadlineExceededException();
+        }
+        errors.report(message, e);
+        if (GuardedConnections.isUnavailable(e)) {
+            throw new DatabaseUnavailableException("Database is unavailable", 5);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
     }
 
     // Event methods
     public List<Event> getEvents() {
+        if (embeddedStore == null && spansAllCommunities()) {
+            try {
+                return mergeInDateOrder(queryAllShards(this::queryEvents));
+            } catch (SQLException e) {
+                reportFailure("Error getting events", e);
+                return new ArrayList<>();
+            }
+        }
+        return getEvents(connectionManager.getRequestCommunity());
+    }
+
+    private List<Event> getEvents(String community) {
+        if (embeddedStore != null) {
+            return embeddedStore.getEvents();
+        }
+        try {
+            return queryEvents(community);
+        } catch (SQLException e) {
+            reportFailure("Error getting events", e);
+        }
+        return new ArrayList<>();
+    }
+
+    private List<Event> queryEvents(String community) throws SQLException {
         List<Event> events = new ArrayList<>();
-        String sql = "SELECT id, title, description, date, time, location, category, organizer, creator_id FROM events ORDER BY date, time";
+        String sql = "SELECT " + EVENT_COLUMNS + " FROM events ORDER BY date, time";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionsOf(community).readConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             while (rs.next()) {
                 events.add(mapResultSetToEvent(rs));
             }
-        } catch (SQLException e) {
-            System.err.println("Error getting events: " + e.getMessage());
-            e.printStackTrace();
         }
         
         return events;
     }
 
+    /**
+     * Events starting in the window ("today", "weekend" or "week"), or the next
+     * upcoming events when window is null, in start order. Ids come from the
+     * in-memory time index; only those rows are read. Returns null for an
+     * unknown window.
+     */
+    public List<Event> getEventsInWindow(String window, int limit) {
+        if (embeddedStore != null || !spansAllCommunities()) {
+            List<Integer> ids = findInWindow(indexes(), window, limit);
+            return ids == null ? null : getEventsByIds(ids);
+        }
+        // The first limit events of every community, merged and cut to limit again
+        List<Integer> ids = new ArrayList<>();
+        for (String community : connectionManager.getCommunities()) {
+            List<Integer> found = findInWindow(indexesOf(community), window, limit);
+            if (found == null) {
+                return null;
+            }
+            ids.addAll(found);
+        }
+        List<Event> events = getEventsByIds(ids);
+        events.sort(EXPORT_ORDER);
+        return events.size() > limit ? new ArrayList<>(events.subList(0, limit)) : events;
+    }
+
+    private static List<Integer> findInWindow(EventIndexes indexes, String window, int limit) {
+        return window == null
+                ? indexes.times().findUpcoming(limit)
+                : indexes.times().findInWindow(window, limit);
+    }
+
+    // Events with the given ids, in the order of the ids; missing ids and ids of
+    // other communities (unless the request spans all of them) are skipped
+    public List<Event> getEventsByIds(List<Integer> ids) {
+        List<Event> events = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return events;
+        }
+        if (embeddedStore != null) {
+            for (Integer id : ids) {
+                Event event = embeddedStore.getEvent(id);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+        Map<String, List<Integer>> idsByCommunity = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            String community = connectionManager.communityOfId(id);
+            if (spansAllCommunities() || community.equals(connectionManager.getRequestCommunity())) {
+                idsByCommunity.computeIfAbsent(community, key -> new ArrayList<>()).add(id);
+            }
+        }
+        String sql = "SELECT " + EVENT_COLUMNS + " FROM events WHERE id = ANY(?)";
+
+        for (Map.Entry<String, List<Integer>> shard : idsByCommunity.entrySet()) {
+            try (Connection conn = connectionsOf(shard.getKey()).readConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                stmt.setArray(1, conn.createArrayOf("integer", shard.getValue().toArray(new Integer[0])));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        events.add(mapResultSetToEvent(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                reportFailure("Error getting events by id", e);
+            }
+        }
+
+        Map<Integer, Integer> positions = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            positions.putIfAbsent(id, positions.size());
+        }
+        sortByRanking(events, positions);
+        return events;
+    }
+
     public Event getEventDetails(int eventId) {
-        String sql = "SELECT id, title, description, date, time, location, category, organizer, creator_id FROM events WHERE id = ?";
+        if (embeddedStore != null) {
+            return embeddedStore.getEvent(eventId);
+        }
+        // Past events may have been moved to the archive; it is only probed when the live table has no row
+        String sql = "SELECT " + EVENT_COLUMNS + " FROM events WHERE id = ? " +
+                     "UNION ALL SELECT " + EVENT_COLUMNS + " FROM events_archive WHERE id = ? LIMIT 1";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionsFor(eventId).readConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, eventId);
+            stmt.setInt(2, eventId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     return mapResultSetToEvent(rs);
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error getting event details: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error getting event details", e);
         }
         
         return null;
     }
 
     public List<Event> searchEvents(Map<String, String> filters) {
-        List<Event> events = new ArrayList<>();
-        StringBuilder sql = new StringBuilder(
-            "SELECT id, title, description, date, time, location, category, organizer, creator_id FROM events WHERE 1=1");
-        List<Object> params = new ArrayList<>();
-        
-        if (filters != null) {
-            String keyword = filters.get("keyword");
-            String category = filters.get("category");
-            String date = filters.get("date");
-            String location = filters.get("location");
-            
-            if (keyword != null && !keyword.trim().isEmpty()) {
-                sql.append(" AND (LOWER(title) LIKE ? OR LOWER(category) LIKE ? OR LOWER(organizer) LIKE ?)");
-                String keywordPattern = "%" + keyword.toLowerCase() + "%";
-                params.add(keywordPattern);
-                params.add(keywordPattern);
-                params.add(keywordPattern);
+        // The community is part of the coalescing key, so no two communities share a result
+        Map<String, String> scoped = filters == null ? new HashMap<>() : new HashMap<>(filters);
+        scoped.put("community", connectionManager.getRequestCommunity());
+        try {
+            boolean fromReplica = connectionManager.readsFromReplica();
+            if (connectionManager.hasReplicas() && !fromReplica) {
+                // Pinned to the primary after a write: a shared or cached result may come from a replica without it
+                return querySearchEvents(SearchCoalescer.normalize(scoped));
             }
-            
-            if (category != null && !category.trim().isEmpty()) {
-                sql.append(" AND LOWER(category) = ?");
-                params.add(category.toLowerCase());
+            // Identical concurrent searches share one query; hand each caller its own copy
+            return new ArrayList<>(searchCoalescer.search(scoped, fromReplica, this::querySearchEvents));
+        } catch (SQLException e) {
+            reportFailure("Error searching events", e);
+        }
+
+        return new ArrayList<>();
+    }
+
+    // Receives exported events one at a time
+    public interface EventConsumer {
+        void accept(Event event) throws IOException;
+    }
+
+    /**
+     * Hands every event matching the search filters to the consumer in date
+     * order, reading them through a server-side cursor EXPORT_FETCH_SIZE rows at
+     * a time so memory stays constant however many events there are. Returns
+     * false if the database failed; IOExceptions from the consumer (usually a
+     * client that went away) are passed on.
+     */
+    public boolean streamEvents(Map<String, String> filters, EventConsumer consumer) throws IOException {
+        if (embeddedStore != null) {
+            List<Event> events = filterEvents(filters);
+            events.sort(EXPORT_ORDER);
+            for (Event event : events) {
+                consumer.accept(event);
             }
-            
-            if (date != null && !date.trim().isEmpty()) {
-                sql.append(" AND date = ?");
-                params.add(date);
+            return true;
+        }
+        if (spansAllCommunities()) {
+            return streamAllShards(filters, consumer);
+        }
+        String community = connectionManager.getRequestCommunity();
+        SearchQuery query = buildSearchQuery(community, filters);
+        if (query.matchesNothing) {
+            return true;
+        }
+        String sql = "SELECT " + EVENT_COLUMNS + " FROM events" + query.where + " ORDER BY date, time, id";
+
+        try (Connection conn = connectionsOf(community).streamingConnection()) {
+            // PgJDBC only uses a cursor (instead of buffering the whole result) inside a transaction
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setFetchSize(EXPORT_FETCH_SIZE);
+                query.bind(conn, stmt);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        // Cursor fetches are not covered by the statement's cancellation, so the
+                        // export's time limit is enforced here, between rows
+                        Deadline.check();
+                        consumer.accept(mapResultSetToEvent(rs));
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
-            
-            if (location != null && !location.trim().isEmpty()) {
-                sql.append(" AND LOWER(location) LIKE ?");
-                params.add("%" + location.toLowerCase() + "%");
+        } catch (SQLException e) {
+            reportFailure("Error exporting events", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * streamEvents over every community: a cursor is opened on each shard and
+     * their rows, each stream already in date order, are merged through a
+     * priority queue holding the current row of every shard. Memory stays
+     * constant here too.
+     */
+    private boolean streamAllShards(Map<String, String> filters, EventConsumer consumer) throws IOException {
+        List<Connection> connections = new ArrayList<>();
+        PriorityQueue<ShardCursor> heads = new PriorityQueue<>(
+                (first, second) -> EXPORT_ORDER.compare(first.current, second.current));
+        try {
+            for (String community : connectionManager.getCommunities()) {
+                SearchQuery query = buildSearchQuery(community, filters);
+                if (query.matchesNothing) {
+                    continue;
+                }
+                String sql = "SELECT " + EVENT_COLUMNS + " FROM events" + query.where + " ORDER BY date, time, id";
+                Connection conn = connectionsOf(community).streamingConnection();
+                connections.add(conn);
+                // PgJDBC only uses a cursor inside a transaction
+                conn.setAutoCommit(false);
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                stmt.setFetchSize(EXPORT_FETCH_SIZE);
+                query.bind(conn, stmt);
+                ShardCursor cursor = new ShardCursor(stmt.executeQuery());
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+            while (!heads.isEmpty()) {
+                Deadline.check();
+                ShardCursor cursor = heads.poll();
+                consumer.accept(cursor.current);
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+        } catch (SQLException e) {
+            reportFailure("Error exporting events", e);
+            return false;
+        } finally {
+            // Read-only, so ending the transactions with a rollback loses nothing; closing frees the cursors
+            for (Connection conn : connections) {
+                try {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    log.warn("Error closing export connection: {}", e.getMessage());
+                }
             }
         }
-        
-        sql.append(" ORDER BY date, time");
-        
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            
-            for (int i = 0; i < params.size(); i++) {
-                stmt.setObject(i + 1, params.get(i));
+        return true;
+    }
+
+    // The rows of one shard's export cursor, one event ahead
+    private class ShardCursor {
+        final ResultSet rs;
+        Event current;
+
+        ShardCursor(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        boolean advance() throws SQLException {
+            if (!rs.next()) {
+                return false;
+            }
+            current = mapResultSetToEvent(rs);
+            return true;
+        }
+    }
+
+    /**
+     * A fingerprint of the events matching the search filters: count, highest
+     * id and a sum of row hashes, computed by one aggregate so that an export
+     * can answer a conditional request without reading the rows. RSVP counts
+     * are left out; they change too often to be worth re-downloading a
+     * calendar for. Over all communities it joins the fingerprints of every
+     * shard. Returns null if the database failed.
+     */
+    public String getExportTag(Map<String, String> filters) {
+        if (embeddedStore != null) {
+            long count = 0;
+            long maxId = 0;
+            long hashSum = 0;
+            for (Event event : filterEvents(filters)) {
+                count++;
+                maxId = Math.max(maxId, event.getId());
+                hashSum += String.join("|", String.valueOf(event.getId()), event.getTitle(),
+                        event.getDescription(), event.getDate(), event.getTime(), event.getLocation(),
+                        event.getCategory(), event.getOrganizer(), String.valueOf(event.getLatitude()),
+                        String.valueOf(event.getLongitude())).hashCode();
+            }
+            return count + "-" + maxId + "-" + Long.toHexString(hashSum);
+        }
+        try {
+            if (spansAllCommunities()) {
+                return String.join(".", queryAllShards(community -> queryExportTag(community, filters)));
+            }
+            return queryExportTag(connectionManager.getRequestCommunity(), filters);
+        } catch (SQLException e) {
+            reportFailure("Error fingerprinting events", e);
+        }
+        return null;
+    }
+
+    private String queryExportTag(String community, Map<String, String> filters) throws SQLException {
+        SearchQuery query = buildSearchQuery(community, filters);
+        if (query.matchesNothing) {
+            return "0-0-0";
+        }
+        String sql = "SELECT COUNT(*), COALESCE(MAX(id), 0), COALESCE(SUM(hashtext(concat_ws('|', "
+                + "id, title, description, date, time, location, category, organizer, latitude, longitude))), 0)"
+                + " FROM events" + query.where;
+
+        try (Connection conn = connectionsOf(community).readConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            query.bind(conn, stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1) + "-" + rs.getLong(2) + "-" + Long.toHexString(rs.getLong(3));
             }
+        }
+    }
+
+    // Loader of searchEvents; filters carry the community the search is scoped to
+    private List<Event> querySearchEvents(Map<String, String> filters) throws SQLException {
+        if (embeddedStore != null) {
+            return filterEvents(filters);
+        }
+        String community = filters.get("community");
+        if (!DatabaseConnectionManager.ALL_COMMUNITIES.equals(community)) {
+            SearchQuery query = buildSearchQuery(community, filters);
+            List<Event> events = query.matchesNothing ? new ArrayList<>() : runSearch(community, query);
+            if (query.ranking != null) {
+                sortByRanking(events, query.ranking);
+            }
+            return events;
+        }
+
+        // Every shard is searched at once, each with the candidates from its own indexes
+        Map<String, SearchQuery> queries = new HashMap<>();
+        Map<Integer, Double> scores = new HashMap<>();
+        boolean ranked = false;
+        boolean nearestFirst = false;
+        for (String shard : connectionManager.getCommunities()) {
+            SearchQuery query = buildSearchQuery(shard, filters);
+            queries.put(shard, query);
+            if (query.ranking != null) {
+                scores.putAll(query.ranking);
+                ranked = true;
+                nearestFirst = query.nearestFirst;
+            }
+        }
+        List<Event> events = mergeInDateOrder(queryAllShards(shard -> queries.get(shard).matchesNothing
+                ? new ArrayList<>() : runSearch(shard, queries.get(shard))));
+        if (ranked) {
+            // Scores are comparable across shards: trigram similarity, or distance in km
+            Comparator<Event> byScore = Comparator.comparingDouble(event -> scores.getOrDefault(event.getId(), 0.0));
+            events.sort(nearestFirst ? byScore : byScore.reversed());
+        }
+        return events;
+    }
+
+    private List<Event> runSearch(String community, SearchQuery query) throws SQLException {
+        List<Event> events = new ArrayList<>();
+        String sql = "SELECT " + EVENT_COLUMNS + " FROM events" + query.where + " ORDER BY date, time";
+        
+        try (Connection conn = connectionsOf(community).readConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             
+            query.bind(conn, stmt);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     events.add(mapResultSetToEvent(rs));
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error searching events: " + e.getMessage());
-            e.printStackTrace();
         }
         
         return events;
     }
 
+    interface ShardQuery<T> {
+        T run(String community) throws SQLException;
+    }
+
+    /**
+     * Runs the query on every shard in parallel and returns the results in
+     * community order. Each worker carries the rest of the caller's deadline
+     * and the caller's request user, so a user who just wrote still reads from
+     * the primary. The first failure is rethrown once every shard has answered.
+     */
+    private <T> List<T> queryAllShards(ShardQuery<T> query) throws SQLException {
+        boolean bounded = Deadline.isSet();
+        long budgetMillis = bounded ? Math.max(1, Deadline.remainingMillis()) : 0;
+        Integer requestUser = connectionManager.getRequestUser();
+        List<Future<T>> futures = new ArrayList<>();
+        for (String community : connectionManager.getCommunities()) {
+            futures.add(shardQueries.submit(() -> {
+                if (bounded) {
+                    Deadline.start(budgetMillis);
+                }
+                connectionManager.bindRequestUser(requestUser);
+                try {
+                    return query.run(community);
+                } finally {
+                    connectionManager.bindRequestUser(null);
+                    Deadline.clear();
+                }
+            }));
+        }
+
+        List<T> results = new ArrayList<>();
+        Throwable failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                throw new SQLException("Interrupted while querying shards", e);
+            }
+        }
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new SQLException("Shard query failed", failure);
+        }
+        return results;
+    }
+
+    // Joins per-shard results that are each in date order; List.sort is a merge
+    // sort that takes the already sorted runs as they are
+    private static List<Event> mergeInDateOrder(List<List<Event>> shardResults) {
+        List<Event> merged = new ArrayList<>();
+        for (List<Event> events : shardResults) {
+            merged.addAll(events);
+        }
+        merged.sort(EXPORT_ORDER);
+        return merged;
+    }
+
+    // WHERE clause and parameters for a search filter map, shared by search and export
+    private static class SearchQuery {
+        final StringBuilder where = new StringBuilder(" WHERE 1=1");
+        final List<Object> params = new ArrayList<>();
+        // Order of the candidates picked by an index (fuzzy score or distance), if any
+        Map<Integer, Double> ranking;
+        // An index ruled out every event, so there is no need to query
+        boolean matchesNothing;
+        // The ranking is by distance (ascending) rather than by fuzzy match score
+        boolean nearestFirst;
+
+        void bind(Connection conn, PreparedStatement stmt) throws SQLException {
+            for (int i = 0; i < params.size(); i++) {
+                if (params.get(i) instanceof Integer[]) {
+                    stmt.setArray(i + 1, conn.createArrayOf("integer", (Integer[]) params.get(i)));
+                } else {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+            }
+        }
+    }
+
+    private SearchQuery buildSearchQuery(String community, Map<String, String> filters) {
+        EventIndexes indexes = indexesOf(community);
+        SearchQuery query = new SearchQuery();
+        if (filters == null) {
+            return query;
+        }
+        StringBuilder sql = query.where;
+        List<Object> params = query.params;
+
+        String keyword = filters.get("keyword");
+        String category = filters.get("category");
+        String date = filters.get("date");
+        String location = filters.get("location");
+        
+        // fuzzy=true: typo-tolerant keyword match over title, organizer and location,
+        // candidates come from the trigram index, best match first
+        if (keyword != null && !keyword.trim().isEmpty() && "true".equalsIgnoreCase(filters.get("fuzzy"))) {
+            query.ranking = indexes.trigrams().search(keyword, fuzzyCandidateLimit(filters));
+            if (query.ranking.isEmpty()) {
+                query.matchesNothing = true;
+                return query;
+            }
+            sql.append(" AND id = ANY(?)");
+            params.add(query.ranking.keySet().toArray(new Integer[0]));
+        } else if (keyword != null && !keyword.trim().isEmpty()) {
+            sql.append(" AND (LOWER(title) LIKE ? OR LOWER(category) LIKE ? OR LOWER(organizer) LIKE ?)");
+            String keywordPattern = "%" + keyword.toLowerCase() + "%";
+            params.add(keywordPattern);
+            params.add(keywordPattern);
+            params.add(keywordPattern);
+        }
+        
+        if (category != null && !category.trim().isEmpty()) {
+            sql.append(" AND LOWER(category) = ?");
+            params.add(category.toLowerCase());
+        }
+        
+        if (date != null && !date.trim().isEmpty()) {
+            sql.append(" AND date = ?");
+            params.add(date);
+        }
+        
+        if (location != null && !location.trim().isEmpty()) {
+            sql.append(" AND LOWER(location) LIKE ?");
+            params.add("%" + location.toLowerCase() + "%");
+        }
+
+        // near=lat,lon&radius=km: candidates come from the spatial index, nearest first
+        double[] near = GeoIndex.parsePoint(filters.get("near"));
+        if (near != null) {
+            Map<Integer, Double> nearby = indexes.geo().findWithin(near[0], near[1], parseRadius(filters.get("radius")));
+            if (nearby.isEmpty()) {
+                query.matchesNothing = true;
+                return query;
+            }
+            sql.append(" AND id = ANY(?)");
+            params.add(nearby.keySet().toArray(new Integer[0]));
+            // An explicit location sorts by distance, even for fuzzy matches
+            query.ranking = nearby;
+            query.nearestFirst = true;
+        }
+        return query;
+    }
+
+    /**
+     * How many fuzzy matches to take from the trigram index. The best
+     * TrigramIndex.MAX_RESULTS are enough for a plain fuzzy search, but the
+     * other filters run after the cut, so with any of them every match is
+     * kept; otherwise the matching events could all be past the cut.
+     */
+    private static int fuzzyCandidateLimit(Map<String, String> filters) {
+        for (String filter : new String[] {"category", "date", "location", "near"}) {
+            String value = filters.get(filter);
+            if (value != null && !value.trim().isEmpty()) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        return TrigramIndex.MAX_RESULTS;
+    }
+
+    // In-memory equivalent of querySearchEvents for the embedded store
+    private List<Event> filterEvents(Map<String, String> filters) {
+        List<Event> events = embeddedStore.getEvents();
+        if (filters == null) {
+            return events;
+        }
+        String keyword = lowerOrNull(filters.get("keyword"));
+        String category = lowerOrNull(filters.get("category"));
+        String date = filters.get("date");
+        String location = lowerOrNull(filters.get("location"));
+        boolean fuzzy = keyword != null && "true".equalsIgnoreCase(filters.get("fuzzy"));
+
+        Map<Integer, Double> ranking = null;
+        Map<Integer, Double> matches = null;
+        if (fuzzy) {
+            matches = indexes().trigrams().search(keyword, fuzzyCandidateLimit(filters));
+            ranking = matches;
+        }
+        Map<Integer, Double> nearby = null;
+        double[] near = GeoIndex.parsePoint(filters.get("near"));
+        if (near != null) {
+            nearby = indexes().geo().findWithin(near[0], near[1], parseRadius(filters.get("radius")));
+            ranking = nearby;
+        }
+
+        List<Event> filtered = new ArrayList<>();
+        for (Event event : events) {
+            if (fuzzy ? !matches.containsKey(event.getId())
+                    : keyword != null && !(contains(event.getTitle(), keyword)
+                            || contains(event.getCategory(), keyword) || contains(event.getOrganizer(), keyword))) {
+                continue;
+            }
+            if (category != null && !category.equals(lowerOrNull(event.getCategory()))) {
+                continue;
+            }
+            if (date != null && !date.trim().isEmpty() && !date.equals(event.getDate())) {
+                continue;
+            }
+            if (location != null && !contains(event.getLocation(), location)) {
+                continue;
+            }
+            if (nearby != null && !nearby.containsKey(event.getId())) {
+                continue;
+            }
+            filtered.add(event);
+        }
+        if (ranking != null) {
+            sortByRanking(filtered, ranking);
+        }
+        return filtered;
+    }
+
+    private static String lowerOrNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.toLowerCase();
+    }
+
+    private static boolean contains(String value, String lowercaseNeedle) {
+        return value != null && value.toLowerCase().contains(lowercaseNeedle);
+    }
+
+    private static double parseRadius(String radius) {
+        if (radius != null) {
+            try {
+                double km = Double.parseDouble(radius.trim());
+                if (km > 0) {
+                    return km;
+                }
+            } catch (NumberFormatException e) {
+                // Fall back to the default radius
+            }
+        }
+        return DEFAULT_RADIUS_KM;
+    }
+
+    // Orders events by their position in the ranking (e.g. nearest first)
+    private static void sortByRanking(List<Event> events, Map<Integer, ?> ranking) {
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (Integer id : ranking.keySet()) {
+            positions.put(id, positions.size());
+        }
+        events.sort(Comparator.comparingInt(event -> positions.getOrDefault(event.getId(), Integer.MAX_VALUE)));
+    }
+
     public Event saveEvent(Event eventData) {
-        String sql = "INSERT INTO events (title, description, date, time, location, category, organizer, creator_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
+        if (embeddedStore != null) {
+            try {
+                Event saved = embeddedStore.saveEvent(eventData);
+                onEventWritten(saved, null);
+                return saved;
+            } catch (IOException e) {
+                errors.report("Error saving event", e);
+                return null;
+            }
+        }
+        String sql = "INSERT INTO events (title, description, date, time, location, category, organizer, creator_id, latitude, longitude) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connections().writeConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, eventData.getTitle());
@@ -309,92 +1010,408 @@ public class Database {
             stmt.setString(6, eventData.getCategory());
             stmt.setString(7, eventData.getOrganizer());
             stmt.setInt(8, eventData.getCreatorId());
+            stmt.setObject(9, eventData.getLatitude(), Types.DOUBLE);
+            stmt.setObject(10, eventData.getLongitude(), Types.DOUBLE);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     eventData.setId(rs.getInt(1));
+                    eventData.setCommunity(connectionManager.communityOfId(eventData.getId()));
+                    eventData.setRsvpCount(0);
+                    eventData.setVersion(1);
+                    onEventWritten(eventData, null);
                     return eventData;
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error saving event: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error saving event", e);
         }
         
         return null;
     }
 
-    public Event updateEvent(int eventId, Event eventData) {
-        String sql = "UPDATE events SET title = ?, description = ?, date = ?, time = ?, location = ?, category = ?, organizer = ? WHERE id = ? RETURNING id, title, description, date, time, location, category, organizer, creator_id";
-        
-        try (Connection conn = connectionManager.getConnection();
+    /**
+     * Updates the event if userId created it and, when expectedVersion is
+     * given, it is still at that version; the version is bumped. The checks
+     * and the write are one statement: the update is conditional on owner and
+     * version, and a CTE reading the row alongside it tells the caller why
+     * nothing was updated.
+     */
+    public EventWriteResult updateEvent(int eventId, int userId, Integer expectedVersion, Event eventData) {
+        if (embeddedStore != null) {
+            try {
+                Event previous = embeddedStore.getEvent(eventId);
+                EventWriteResult result = embeddedStore.updateEvent(eventId, userId, expectedVersion, eventData);
+                if (result.getStatus() == EventWriteResult.Status.DONE) {
+                    onEventWritten(result.getEvent(), previous == null ? null : previous.getCategory());
+                }
+                return result;
+            } catch (IOException e) {
+                errors.report("Error updating event", e);
+                return EventWriteResult.failed();
+            }
+        }
+        // Self-join so the pre-update category can be returned for cache invalidation
+        String sql = "WITH target AS (SELECT creator_id, version FROM events WHERE id = ?), " +
+                     "updated AS (UPDATE events e SET title = ?, description = ?, date = ?, time = ?, location = ?, category = ?, organizer = ?, latitude = ?, longitude = ?, version = e.version + 1 " +
+                     "FROM events old WHERE e.id = ? AND old.id = e.id AND e.creator_id = ?" +
+                     (expectedVersion != null ? " AND e.version = ?" : "") + " " +
+                     "RETURNING e.id, e.title, e.description, e.date, e.time, e.location, e.category, e.organizer, e.creator_id, e.latitude, e.longitude, e.rsvp_count, e.version, old.category AS old_category) " +
+                     "SELECT target.creator_id AS current_creator_id, target.version AS current_version, updated.* FROM target LEFT JOIN updated ON TRUE";
+
+        try (Connection conn = connectionsFor(eventId).writeConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, eventData.getTitle());
-            stmt.setString(2, eventData.getDescription());
-            stmt.setString(3, eventData.getDate());
-            stmt.setString(4, eventData.getTime());
-            stmt.setString(5, eventData.getLocation());
-            stmt.setString(6, eventData.getCategory());
-            stmt.setString(7, eventData.getOrganizer());
-            stmt.setInt(8, eventId);
-            
+
+            stmt.setInt(1, eventId);
+            stmt.setString(2, eventData.getTitle());
+            stmt.setString(3, eventData.getDescription());
+            stmt.setString(4, eventData.getDate());
+            stmt.setString(5, eventData.getTime());
+            stmt.setString(6, eventData.getLocation());
+            stmt.setString(7, eventData.getCategory());
+            stmt.setString(8, eventData.getOrganizer());
+            stmt.setObject(9, eventData.getLatitude(), Types.DOUBLE);
+            stmt.setObject(10, eventData.getLongitude(), Types.DOUBLE);
+            stmt.setInt(11, eventId);
+            stmt.setInt(12, userId);
+            if (expectedVersion != null) {
+                stmt.setInt(13, expectedVersion);
+            }
+
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapResultSetToEvent(rs);
+                if (!rs.next()) {
+                    return EventWriteResult.notFound();
+                }
+                if (rs.getObject("id") == null) {
+                    return refusedWrite(rs, userId);
                 }
+                Event updated = mapResultSetToEvent(rs);
+                onEventWritten(updated, rs.getString("old_category"));
+                return EventWriteResult.done(updated);
             }
         } catch (SQLException e) {
-            System.err.println("Error updating event: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error updating event", e);
         }
-        
-        return null;
+
+        return EventWriteResult.failed();
     }
 
-    public boolean deleteEvent(int eventId) {
-        String sql = "DELETE FROM events WHERE id = ?";
-        
-        try (Connection conn = connectionManager.getConnection();
+    // Deletes the event under the same conditions as updateEvent, in one statement
+    public EventWriteResult deleteEvent(int eventId, int userId, Integer expectedVersion) {
+        if (embeddedStore != null) {
+            try {
+                EventWriteResult result = embeddedStore.deleteEvent(eventId, userId, expectedVersion);
+                if (result.getStatus() == EventWriteResult.Status.DONE) {
+                    onEventDeleted(eventId, result.getEvent().getCategory());
+                }
+                return result;
+            } catch (IOException e) {
+                errors.report("Error deleting event", e);
+                return EventWriteResult.failed();
+            }
+        }
+        String sql = "WITH target AS (SELECT creator_id, version FROM events WHERE id = ?), " +
+                     "deleted AS (DELETE FROM events WHERE id = ? AND creator_id = ?" +
+                     (expectedVersion != null ? " AND version = ?" : "") + " " +
+                     "RETURNING " + EVENT_COLUMNS + ") " +
+                     "SELECT target.creator_id AS current_creator_id, target.version AS current_version, deleted.* FROM target LEFT JOIN deleted ON TRUE";
+
+        try (Connection conn = connectionsFor(eventId).writeConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
+
             stmt.setInt(1, eventId);
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            stmt.setInt(2, eventId);
+            stmt.setInt(3, userId);
+            if (expectedVersion != null) {
+                stmt.setInt(4, expectedVersion);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return EventWriteResult.notFound();
+                }
+                if (rs.getObject("id") == null) {
+                    return refusedWrite(rs, userId);
+                }
+                Event deleted = mapResultSetToEvent(rs);
+                onEventDeleted(eventId, deleted.getCategory());
+                return EventWriteResult.done(deleted);
+            }
         } catch (SQLException e) {
-            System.err.println("Error deleting event: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error deleting event", e);
         }
-        
+
+        return EventWriteResult.failed();
+    }
+
+    // Why a conditional write matched no row, from the row as the statement saw it
+    private static EventWriteResult refusedWrite(ResultSet rs, int userId) throws SQLException {
+        if (rs.getInt("current_creator_id") != userId) {
+            return EventWriteResult.forbidden();
+        }
+        // Either the expected version is stale or a concurrent edit got there first
+        return EventWriteResult.conflict(rs.getInt("current_version"));
+    }
+
+    // Typeahead completions from the in-memory index; never touches the database
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return indexes().suggestions().suggest(prefix, limit);
+    }
+
+    // Event counts per category, month and location over all events, from the in-memory counters
+    public Map<String, List<FacetCount>> getFacets() {
+        return indexes().facets().getFacets();
+    }
+
+    public int getEventCount() {
+        return indexes().facets().getTotal();
+    }
+
+    // Keeps caches and in-memory indexes in step with a saved or updated event
+    private void onEventWritten(Event event, String previousCategory) {
+        connectionManager.recordWrite();
+        EventJsonCache.getInstance().invalidate(event.getId());
+        indexesOf(connectionManager.communityOfId(event.getId())).put(event);
+        if (previousCategory != null) {
+            searchCoalescer.invalidateCategory(previousCategory);
+        }
+        searchCoalescer.invalidateCategory(event.getCategory());
+    }
+
+    private void onEventDeleted(int eventId, String category) {
+        connectionManager.recordWrite();
+        EventJsonCache.getInstance().invalidate(eventId);
+        indexesOf(connectionManager.communityOfId(eventId)).remove(eventId);
+        searchCoalescer.invalidateCategory(category);
+        if (rsvpCounter != null) {
+            rsvpCounter.forget(eventId);
+        }
+        ActivityTracker.getInstance().forget(eventId);
+    }
+
+    // RSVP methods
+
+    // Marks the user as attending; repeating it is a no-op. Returns false on failure,
+    // e.g. when the event does not exist.
+    public boolean addRsvp(int eventId, int userId) {
+        if (embeddedStore != null) {
+            try {
+                return embeddedStore.addRsvp(eventId, userId) != null;
+            } catch (IOException e) {
+                errors.report("Error adding RSVP", e);
+                return false;
+            }
+        }
+        String sql = "INSERT INTO rsvps (event_id, user_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
+
+        try (Connection conn = connectionsFor(eventId).writeConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, eventId);
+            stmt.setInt(2, userId);
+            if (stmt.executeUpdate() > 0) {
+                onRsvpChanged(eventId, 1);
+            }
+            return true;
+        } catch (SQLException e) {
+            reportFailure("Error adding RSVP", e);
+        }
+
         return false;
     }
 
+    // Cancels the user's RSVP; cancelling one that doesn't exist is a no-op
+    public boolean removeRsvp(int eventId, int userId) {
+        if (embeddedStore != null) {
+            try {
+                embeddedStore.removeRsvp(eventId, userId);
+                return true;
+            } catch (IOException e) {
+                errors.report("Error removing RSVP", e);
+                return false;
+            }
+        }
+        String sql = "DELETE FROM rsvps WHERE event_id = ? AND user_id = ?";
+
+        try (Connection conn = connectionsFor(eventId).writeConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, eventId);
+            stmt.setInt(2, userId);
+            if (stmt.executeUpdate() > 0) {
+                onRsvpChanged(eventId, -1);
+            }
+            return true;
+        } catch (SQLException e) {
+            reportFailure("Error removing RSVP", e);
+        }
+
+        return false;
+    }
+
+    public boolean hasRsvp(int eventId, int userId) {
+        if (embeddedStore != null) {
+            return embeddedStore.hasRsvp(eventId, userId);
+        }
+        String sql = "SELECT 1 FROM rsvps WHERE event_id = ? AND user_id = ? " +
+                     "UNION ALL SELECT 1 FROM rsvps_archive WHERE event_id = ? AND user_id = ? LIMIT 1";
+
+        try (Connection conn = connectionsFor(eventId).readConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, eventId);
+            stmt.setInt(2, userId);
+            stmt.setInt(3, eventId);
+            stmt.setInt(4, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            reportFailure("Error checking RSVP", e);
+        }
+
+        return false;
+    }
+
+    // Stored count plus RSVPs not yet flushed to events.rsvp_count. An archived
+    // event's count was recounted when it was moved, so nothing is pending for it.
+    public int getRsvpCount(int eventId) {
+        if (embeddedStore != null) {
+            return embeddedStore.getRsvpCount(eventId);
+        }
+        String sql = "SELECT rsvp_count, FALSE AS archived FROM events WHERE id = ? " +
+                     "UNION ALL SELECT rsvp_count, TRUE FROM events_archive WHERE id = ? LIMIT 1";
+
+        try (Connection conn = connectionsFor(eventId).readConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, eventId);
+            stmt.setInt(2, eventId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    if (rs.getBoolean("archived")) {
+                        return rs.getInt("rsvp_count");
+                    }
+                    return (int) Math.max(0, rs.getInt("rsvp_count") + rsvpCounter.pendingDelta(eventId));
+                }
+            }
+        } catch (SQLException e) {
+            reportFailure("Error getting RSVP count", e);
+        }
+
+        return 0;
+    }
+
+    // Counted in memory and flushed in batches; the event row itself is not locked here
+    private void onRsvpChanged(int eventId, int delta) {
+        connectionManager.recordWrite();
+        rsvpCounter.add(eventId, delta);
+    }
+
     // Comment methods
     public List<Comment> getCommentsForEvent(int eventId) {
+        if (embeddedStore != null) {
+            return embeddedStore.getCommentsForEvent(eventId);
+        }
         List<Comment> comments = new ArrayList<>();
-        String sql = "SELECT id, event_id, user_id, text, user_name, timestamp FROM comments WHERE event_id = ? ORDER BY timestamp DESC";
+        // An event's comments are either all live or all archived with it
+        String sql = "SELECT id, event_id, user_id, text, user_name, timestamp FROM comments WHERE event_id = ? " +
+                     "UNION ALL SELECT id, event_id, user_id, text, user_name, timestamp FROM comments_archive WHERE event_id = ? " +
+                     "ORDER BY timestamp DESC";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionsFor(eventId).readConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, eventId);
+            stmt.setInt(2, eventId);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     comments.add(mapResultSetToComment(rs));
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error getting comments: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error getting comments", e);
         }
         
         return comments;
     }
 
+    public Comment getComment(int commentId) {
+        if (embeddedStore != null) {
+            return embeddedStore.getComment(commentId);
+        }
+        // Comments of archived events are only probed when the live table has no row
+        String sql = "SELECT id, event_id, user_id, text, user_name, timestamp FROM comments WHERE id = ? " +
+                     "UNION ALL SELECT id, event_id, user_id, text, user_name, timestamp FROM comments_archive WHERE id = ? LIMIT 1";
+
+        try (Connection conn = connectionsFor(commentId).readConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, commentId);
+            stmt.setInt(2, commentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToComment(rs);
+                }
+            }
+        } catch (SQLException e) {
+            reportFailure("Error getting comment", e);
+        }
+
+        return null;
+    }
+
     public Comment saveComment(int eventId, String text, int userId, String userName) {
+        if (embeddedStore != null) {
+            try {
+                return embeddedStore.saveComment(eventId, text, userId, userName);
+            } catch (IOException e) {
+                errors.report("Error saving comment", e);
+                return null;
+            }
+        }
+        CommentBatcher commentBatcher = commentBatchers.get(connectionManager.communityOfId(eventId));
+        if (commentBatcher != null) {
+            CompletableFuture<Comment> pending = commentBatcher.submit(eventId, userId, text, userName);
+            if (pending != null) {
+                try {
+                    // No longer than the request's budget; 30 s for callers without one
+                    long waitNanos = Deadline.isSet() ? Math.max(0, Deadline.remainingNanos()) : TimeUnit.SECONDS.toNanos(30);
+                    Comment comment = pending.get(waitNanos, TimeUnit.NANOSECONDS);
+                    connectionManager.recordWrite();
+                    return comment;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ServiceUnavailableException) {
+                        throw (ServiceUnavailableException) cause;
+                    }
+                    if (cause instanceof SQLException) {
+                        // A 503 when the database is unavailable; otherwise the comment was refused
+                        reportFailure("Error saving comment", (SQLException) cause);
+                        return null;
+                    }
+                    if (!(cause instanceof RejectedExecutionException)) {
+                        errors.report("Error saving comment", cause);
+                        return null;
+                    }
+                    // Batcher shut down before taking it; fall through to a direct insert
+                } catch (TimeoutException e) {
+                    // Withdrawn unless the committer has already taken it, so a retry does not usually duplicate it
+                    pending.cancel(false);
+                    if (Deadline.isSet()) {
+                        throw new DeadlineExceededException();
+                    }
+                    log.warn("Timed out waiting for comment batch commit");
+                    throw new DatabaseUnavailableException("Database is busy", 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DatabaseUnavailableException("Interrupted while saving comment", 1);
+                }
+            }
+        }
+
         String sql = "INSERT INTO comments (event_id, user_id, text, user_name) VALUES (?, ?, ?, ?) RETURNING id, event_id, user_id, text, user_name, timestamp";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionsFor(eventId).writeConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, eventId);
@@ -404,21 +1421,29 @@ public class Database {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
+                    connectionManager.recordWrite();
                     return mapResultSetToComment(rs);
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error saving comment: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error saving comment", e);
         }
         
         return null;
     }
 
     public Comment editComment(int commentId, String text) {
+        if (embeddedStore != null) {
+            try {
+                return embeddedStore.editComment(commentId, text);
+            } catch (IOException e) {
+                errors.report("Error editing comment", e);
+                return null;
+            }
+        }
         String sql = "UPDATE comments SET text = ? WHERE id = ? RETURNING id, event_id, user_id, text, user_name, timestamp";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionsFor(commentId).writeConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, text);
@@ -426,29 +1451,39 @@ public class Database {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
+                    connectionManager.recordWrite();
                     return mapResultSetToComment(rs);
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error editing comment: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error editing comment", e);
         }
         
         return null;
     }
 
     public boolean deleteComment(int commentId) {
+        if (embeddedStore != null) {
+            try {
+                return embeddedStore.deleteComment(commentId);
+            } catch (IOException e) {
+                errors.report("Error deleting comment", e);
+                return false;
+            }
+        }
         String sql = "DELETE FROM comments WHERE id = ?";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionsFor(commentId).writeConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, commentId);
             int rowsAffected = stmt.executeUpdate();
+            if (rowsAffected > 0) {
+                connectionManager.recordWrite();
+            }
             return rowsAffected > 0;
         } catch (SQLException e) {
-            System.err.println("Error deleting comment: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error deleting comment", e);
         }
         
         return false;
@@ -456,9 +1491,12 @@ public class Database {
 
     // User methods
     public User getUser(String email) {
+        if (embeddedStore != null) {
+            return embeddedStore.getUser(email);
+        }
         String sql = "SELECT user_id, name, email, password, is_logged_in FROM users WHERE email = ?";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connections().primaryReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, email);
@@ -468,17 +1506,19 @@ public class Database {
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error getting user: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error getting user", e);
         }
         
         return null;
     }
 
     public User getUserById(int userId) {
+        if (embeddedStore != null) {
+            return embeddedStore.getUserById(userId);
+        }
         String sql = "SELECT user_id, name, email, password, is_logged_in FROM users WHERE user_id = ?";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionsFor(userId).primaryReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, userId);
@@ -488,18 +1528,20 @@ public class Database {
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error getting user by ID: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error getting user by ID", e);
         }
         
         return null;
     }
 
     public List<User> getAllUsers() {
+        if (embeddedStore != null) {
+            return embeddedStore.getAllUsers();
+        }
         List<User> users = new ArrayList<>();
         String sql = "SELECT user_id, name, email, password, is_logged_in FROM users";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connections().primaryReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
@@ -507,14 +1549,21 @@ public class Database {
                 users.add(mapResultSetToUser(rs));
             }
         } catch (SQLException e) {
-            System.err.println("Error getting all users: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error getting all users", e);
         }
         
         return users;
     }
 
     public User saveUser(User user) {
+        if (embeddedStore != null) {
+            try {
+                return embeddedStore.saveUser(user);
+            } catch (IOException e) {
+                errors.report("Error saving user", e);
+                throw new RuntimeException("Failed to save user", e);
+            }
+        }
         // Check if email already exists
         if (getUser(user.getEmail()) != null) {
             throw new IllegalArgumentException("Email already exists: " + user.getEmail());
@@ -522,7 +1571,7 @@ public class Database {
         
         String sql = "INSERT INTO users (name, email, password, is_logged_in) VALUES (?, ?, ?, ?) RETURNING user_id";
         
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connections().writeConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, user.getName());
@@ -533,18 +1582,79 @@ public class Database {
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     user.setUserId(rs.getInt(1));
+                    user.setCommunity(connectionManager.communityOfId(user.getUserId()));
                     return user;
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error saving user: " + e.getMessage());
-            e.printStackTrace();
+            reportFailure("Error saving user", e);
             throw new RuntimeException("Failed to save user", e);
         }
         
         return null;
     }
 
+    public void updateUserLoginStatus(int userId, boolean isLoggedIn) {
+        if (embeddedStore != null) {
+            try {
+                embeddedStore.updateUserLoginStatus(userId, isLoggedIn);
+            } catch (IOException e) {
+                errors.report("Error updating user login status", e);
+            }
+            return;
+        }
+
+        String sql = "UPDATE users SET is_logged_in = ? WHERE user_id = ?";
+        try (Connection conn = connectionsFor(userId).writeConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setBoolean(1, isLoggedIn);
+            stmt.setInt(2, userId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            reportFailure("Error updating user login status", e);
+        }
+    }
+
+    // Audit methods
+    /**
+     * Appends a batch of audit records with one INSERT over unnested arrays.
+     * Throws so the audit consumer can retry; there is no audit table in
+     * embedded mode.
+     */
+    public void saveAuditRecords(List<AuditRecord> records) throws SQLException {
+        if (embeddedStore != null) {
+            throw new SQLException("The embedded store has no audit_log table; set AUDIT_SINK=file");
+        }
+        String sql = "INSERT INTO audit_log (sequence, occurred_at, action, user_id, target_id) "
+                + "SELECT seq, to_timestamp(millis / 1000.0), action, NULLIF(user_id, 0), NULLIF(target_id, 0) "
+                + "FROM unnest(?::bigint[], ?::bigint[], ?::varchar[], ?::integer[], ?::integer[]) "
+                + "AS batch(seq, millis, action, user_id, target_id)";
+        Long[] sequences = new Long[records.size()];
+        Long[] timestamps = new Long[records.size()];
+        String[] actions = new String[records.size()];
+        Integer[] userIds = new Integer[records.size()];
+        Integer[] targetIds = new Integer[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            AuditRecord record = records.get(i);
+            sequences[i] = record.getSequence();
+            timestamps[i] = record.getTimestamp();
+            actions[i] = record.getAction().name();
+            userIds[i] = record.getUserId();
+            targetIds[i] = record.getTargetId();
+        }
+
+        // Audit records are not about any one community; they are kept on the default shard
+        try (Connection conn = connectionsOf(connectionManager.getDefaultCommunity()).writeConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", sequences));
+            stmt.setArray(2, conn.createArrayOf("bigint", timestamps));
+            stmt.setArray(3, conn.createArrayOf("varchar", actions));
+            stmt.setArray(4, conn.createArrayOf("integer", userIds));
+            stmt.setArray(5, conn.createArrayOf("integer", targetIds));
+            stmt.executeUpdate();
+        }
+    }
+
     // Helper methods to map ResultSet to model objects
     private Event mapResultSetToEvent(ResultSet rs) throws SQLException {
         Event event = new Event();
@@ -557,6 +1667,11 @@ public class Database {
         event.setCategory(rs.getString("category"));
         event.setOrganizer(rs.getString("organizer"));
         event.setCreatorId(rs.getInt("creator_id"));
+        event.setLatitude(rs.getObject("latitude", Double.class));
+        event.setLongitude(rs.getObject("longitude", Double.class));
+        event.setRsvpCount((int) Math.max(0, rs.getInt("rsvp_count") + rsvpCounter.pendingDelta(event.getId())));
+        event.setVersion(rs.getInt("version"));
+        event.setCommunity(connectionManager.communityOfId(event.getId()));
         return event;
     }
 
@@ -567,6 +1682,7 @@ public class Database {
         comment.setUserId(rs.getInt("user_id"));
         comment.setText(rs.getString("text"));
         comment.setUserName(rs.getString("user_name"));
+        comment.setCommunity(connectionManager.communityOfId(comment.getId()));
         Timestamp timestamp = rs.getTimestamp("timestamp");
         if (timestamp != null) {
             comment.setTimestamp(timestamp.toLocalDateTime().toString());
@@ -581,6 +1697,7 @@ public class Database {
         user.setEmail(rs.getString("email"));
         user.setPassword(rs.getString("password"));
         user.setLoggedIn(rs.getBoolean("is_logged_in"));
+        user.setCommunity(connectionManager.communityOfId(user.getUserId()));
         return user;
     }
 }
@@ -2,15 +2,64 @@ package com.communityevents.database;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Connection pools, and the router between community shards.
+ *
+ * Each community (town) has its own database. The default community
+ * (DEFAULT_COMMUNITY) lives on DB_URL, together with its read replicas; the
+ * others are listed in DB_SHARDS as community=jdbcUrl pairs and get a pool
+ * each. Shard k hands out event, comment and user ids starting at
+ * k * SHARD_ID_RANGE, so an id alone tells which shard holds the row. The
+ * community of the request being handled is bound to its thread; the
+ * no-argument connection methods are for the default community.
+ */
 public class DatabaseConnectionManager {
+    private static final Logger log = LoggerFactory.getLogger(DatabaseConnectionManager.class);
+    // Ids of shard k start at k * SHARD_ID_RANGE; ids are ints, which leaves room for 21 shards
+    static final int SHARD_ID_RANGE = 100_000_000;
+    private static final int MAX_SHARDS = Integer.MAX_VALUE / SHARD_ID_RANGE;
+    // Bound instead of a community to list and search across all of them
+    public static final String ALL_COMMUNITIES = "all";
+
     private static DatabaseConnectionManager instance;
     private HikariDataSource dataSource;
+    // Connections per pool (primary, each replica and each shard); the bulkheads are sized from it
+    static final int POOL_SIZE = 10;
+
+    private List<HikariDataSource> replicaDataSources = new ArrayList<>();
+    private boolean leastBusySelection;
+    private long readYourWritesMillis;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    // userId -> time of that user's last write, for read-your-writes stickiness
+    private final Map<Integer, Long> recentWriters = new ConcurrentHashMap<>();
+    private final ThreadLocal<Integer> requestUser = new ThreadLocal<>();
+    // Communities by shard number; the default community is shard 0
+    private final List<String> communities = new ArrayList<>();
+    private final Map<String, HikariDataSource> shardDataSources = new HashMap<>();
+    private final ThreadLocal<String> requestCommunity = new ThreadLocal<>();
 
     private DatabaseConnectionManager() {
-        initializeDataSource();
+        communities.add(defaultCommunityFromEnvironment());
+        // The embedded store needs no connections, and there may be no server to connect to
+        if (!isEmbeddedMode()) {
+            initializeDataSource();
+            initializeReplicaDataSources();
+            initializeShardDataSources();
+        }
     }
 
     public static synchronized DatabaseConnectionManager getInstance() {
@@ -20,14 +69,17 @@ public class DatabaseConnectionManager {
         return instance;
     }
 
+    // DB_MODE=embedded runs against the local log-structured store instead of Postgres
+    public static boolean isEmbeddedMode() {
+        return "embedded".equalsIgnoreCase(System.getenv("DB_MODE"));
+    }
+
     private void initializeDataSource() {
-        HikariConfig config = new HikariConfig();
-        
         // Get database configuration from environment variables or use defaults
         String dbUrl = System.getenv("DB_URL");
         String dbUser = System.getenv("DB_USER");
         String dbPassword = System.getenv("DB_PASSWORD");
-        
+
         if (dbUrl == null || dbUrl.isEmpty()) {
             dbUrl = "jdbc:postgresql://localhost:5432/community_events";
         }
@@ -37,34 +89,311 @@ public class DatabaseConnectionManager {
         if (dbPassword == null) {
             dbPassword = "postgres";
         }
-        
-        config.setJdbcUrl(dbUrl);
-        config.setUsername(dbUser);
-        config.setPassword(dbPassword);
+
+        dataSource = new HikariDataSource(createConfig(dbUrl, dbUser, dbPassword, false));
+    }
+
+    private void initializeReplicaDataSources() {
+        // Comma-separated JDBC URLs of read-only replicas; reuse the primary's credentials unless overridden
+        String replicaUrls = System.getenv("DB_REPLICA_URLS");
+        if (replicaUrls == null || replicaUrls.trim().isEmpty()) {
+            return;
+        }
+
+        String replicaUser = System.getenv("DB_REPLICA_USER");
+        String replicaPassword = System.getenv("DB_REPLICA_PASSWORD");
+        if (replicaUser == null || replicaUser.isEmpty()) {
+            replicaUser = dataSource.getUsername();
+        }
+        if (replicaPassword == null) {
+            replicaPassword = dataSource.getPassword();
+        }
+
+        for (String url : replicaUrls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                replicaDataSources.add(new HikariDataSource(createConfig(url.trim(), replicaUser, replicaPassword, true)));
+            }
+        }
+
+        leastBusySelection = "least-busy".equalsIgnoreCase(System.getenv("DB_REPLICA_SELECTION"));
+        readYourWritesMillis = 5000;
+        String stickiness = System.getenv("DB_READ_YOUR_WRITES_MS");
+        if (stickiness != null && !stickiness.isEmpty()) {
+            try {
+                readYourWritesMillis = Long.parseLong(stickiness.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid DB_READ_YOUR_WRITES_MS: {}", stickiness);
+            }
+        }
+    }
+
+    private static String defaultCommunityFromEnvironment() {
+        String community = System.getenv("DEFAULT_COMMUNITY");
+        return community == null || community.trim().isEmpty() ? "default" : community.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void initializeShardDataSources() {
+        // Comma-separated community=jdbcUrl pairs; the order assigns shard numbers, so only append
+        String shards = System.getenv("DB_SHARDS");
+        if (shards == null || shards.trim().isEmpty()) {
+            return;
+        }
+        for (String shard : shards.split(",")) {
+            if (shard.trim().isEmpty()) {
+                continue;
+            }
+            int separator = shard.indexOf('=');
+            String community = separator < 0 ? "" : shard.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            if (!community.matches("[a-z0-9][a-z0-9_-]*") || community.equals(ALL_COMMUNITIES)
+                    || communities.contains(community)) {
+                throw new IllegalArgumentException("Invalid DB_SHARDS entry: " + shard.trim());
+            }
+            if (communities.size() == MAX_SHARDS) {
+                throw new IllegalArgumentException("DB_SHARDS lists more than " + (MAX_SHARDS - 1) + " shards");
+            }
+            HikariConfig config = createConfig(shard.substring(separator + 1).trim(),
+                    dataSource.getUsername(), dataSource.getPassword(), false);
+            config.setPoolName("shard-" + community);
+            communities.add(community);
+            shardDataSources.put(community, new HikariDataSource(config));
+        }
+        log.info("Sharded by community: {}", communities);
+    }
+
+    private HikariConfig createConfig(String url, String user, String password, boolean readOnly) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
         config.setDriverClassName("org.postgresql.Driver");
-        
+        config.setReadOnly(readOnly);
+        if (readOnly) {
+            config.setPoolName("replica-" + (replicaDataSources.size() + 1));
+        }
+
         // Connection pool settings
-        config.setMaximumPoolSize(10);
+        config.setMaximumPoolSize(POOL_SIZE);
         config.setMinimumIdle(2);
-        config.setConnectionTimeout(30000);
+        // The longest any request waits for a pooled connection, whatever its own budget
+        config.setConnectionTimeout(connectionTimeoutFromEnvironment());
         config.setIdleTimeout(600000);
         config.setMaxLifetime(1800000);
         config.setLeakDetectionThreshold(60000);
-        
+
         // Connection test
         config.setConnectionTestQuery("SELECT 1");
-        
-        dataSource = new HikariDataSource(config);
+
+        return config;
+    }
+
+    private static long connectionTimeoutFromEnvironment() {
+        String timeout = System.getenv("DB_CONNECTION_TIMEOUT_MS");
+        if (timeout == null || timeout.isEmpty()) {
+            return 5000;
+        }
+        try {
+            // Hikari rejects anything under 250 ms
+            return Math.max(250, Long.parseLong(timeout.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid DB_CONNECTION_TIMEOUT_MS: {}", timeout);
+            return 5000;
+        }
     }
 
     public Connection getConnection() throws SQLException {
+        if (dataSource == null) {
+            throw new SQLException("No database connections in embedded mode");
+        }
         return dataSource.getConnection();
     }
 
+    // Connection for queries that tolerate replication lag. Falls back to the primary
+    // when no replicas are configured or the current request's user wrote recently.
+    public Connection getReadConnection() throws SQLException {
+        if (replicaDataSources.isEmpty() || hasRecentWrite(requestUser.get())) {
+            return getConnection();
+        }
+        return selectReplica().getConnection();
+    }
+
+    public boolean hasReplicas() {
+        return !replicaDataSources.isEmpty();
+    }
+
+    // Whether getReadConnection() would hand the current request a replica
+    public boolean readsFromReplica() {
+        return !replicaDataSources.isEmpty() && !hasRecentWrite(requestUser.get());
+    }
+
+    // How long a user's reads stay on the primary after a write; also a bound on the replica lag tolerated
+    public long getReadYourWritesMillis() {
+        return readYourWritesMillis;
+    }
+
+    // Primary connection of a community's shard
+    public Connection getConnection(String community) throws SQLException {
+        if (community.equals(getDefaultCommunity())) {
+            return getConnection();
+        }
+        return shardDataSource(community).getConnection();
+    }
+
+    // Read connection of a community's shard; only the default community has replicas
+    public Connection getReadConnection(String community) throws SQLException {
+        if (community.equals(getDefaultCommunity())) {
+            return getReadConnection();
+        }
+        return shardDataSource(community).getConnection();
+    }
+
+    private HikariDataSource shardDataSource(String community) throws SQLException {
+        HikariDataSource shard = shardDataSources.get(community);
+        if (shard == null) {
+            throw new SQLException("Unknown community: " + community);
+        }
+        return shard;
+    }
+
+    // All communities, in shard order
+    public List<String> getCommunities() {
+        return Collections.unmodifiableList(communities);
+    }
+
+    public String getDefaultCommunity() {
+        return communities.get(0);
+    }
+
+    public boolean hasCommunity(String community) {
+        return communities.contains(community);
+    }
+
+    public int getShardNumber(String community) {
+        return communities.indexOf(community);
+    }
+
+    // The community whose shard allocated an event, comment or user id
+    public String communityOfId(int id) {
+        int shard = id / SHARD_ID_RANGE;
+        return shard > 0 && shard < communities.size() ? communities.get(shard) : getDefaultCommunity();
+    }
+
+    // Binds the community of the request being handled on this thread (or ALL_COMMUNITIES), or clears it when null
+    public void bindRequestCommunity(String community) {
+        if (community == null) {
+            requestCommunity.remove();
+        } else {
+            requestCommunity.set(community);
+        }
+    }
+
+    // The bound community, or the default one; ALL_COMMUNITIES when the request spans every shard
+    public String getRequestCommunity() {
+        String community = requestCommunity.get();
+        return community == null ? getDefaultCommunity() : community;
+    }
+
+    private HikariDataSource selectReplica() {
+        if (!leastBusySelection) {
+            int index = Math.floorMod(nextReplica.getAndIncrement(), replicaDataSources.size());
+            return replicaDataSources.get(index);
+        }
+
+        HikariDataSource leastBusy = replicaDataSources.get(0);
+        int fewestActive = Integer.MAX_VALUE;
+        for (HikariDataSource replica : replicaDataSources) {
+            HikariPoolMXBean pool = replica.getHikariPoolMXBean();
+            int active = pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+            if (active < fewestActive) {
+                fewestActive = active;
+                leastBusy = replica;
+            }
+        }
+        return leastBusy;
+    }
+
+    // Binds the user of the request being handled on this thread, or clears it when null
+    public void bindRequestUser(Integer userId) {
+        if (userId == null) {
+            requestUser.remove();
+        } else {
+            requestUser.set(userId);
+        }
+    }
+
+    // The bound user, or null; lets work handed to other threads keep the request's read routing
+    public Integer getRequestUser() {
+        return requestUser.get();
+    }
+
+    // Records a write by the current request's user so their next reads go to the primary
+    public void recordWrite() {
+        Integer userId = requestUser.get();
+        if (userId != null && !replicaDataSources.isEmpty()) {
+            recentWriters.put(userId, System.currentTimeMillis());
+        }
+    }
+
+    private boolean hasRecentWrite(Integer userId) {
+        if (userId == null) {
+            return false;
+        }
+        Long lastWrite = recentWriters.get(userId);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastWrite > readYourWritesMillis) {
+            recentWriters.remove(userId, lastWrite);
+            return false;
+        }
+        return true;
+    }
+
+    // Opens connections up to each pool's minimum idle size so the first requests don't wait for them
+    public void prefill() {
+        if (dataSource == null) {
+            return;
+        }
+        prefill(dataSource);
+        for (HikariDataSource replica : replicaDataSources) {
+            prefill(replica);
+        }
+        for (HikariDataSource shard : shardDataSources.values()) {
+            prefill(shard);
+        }
+    }
+
+    private void prefill(HikariDataSource pool) {
+        List<Connection> held = new ArrayList<>();
+        try {
+            while (held.size() < pool.getMinimumIdle()) {
+                held.add(pool.getConnection());
+            }
+        } catch (SQLException e) {
+            log.warn("Error filling connection pool {}: {}", pool.getPoolName(), e.getMessage());
+        } finally {
+            for (Connection conn : held) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    // Returning to the pool; nothing to recover
+                }
+            }
+        }
+    }
+
     public void close() {
+        for (HikariDataSource shard : shardDataSources.values()) {
+            if (!shard.isClosed()) {
+                shard.close();
+            }
+        }
+        for (HikariDataSource replica : replicaDataSources) {
+            if (!replica.isClosed()) {
+                replica.close();
+            }
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
         }
     }
 }
-
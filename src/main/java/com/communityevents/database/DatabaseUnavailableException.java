@@ -0,0 +1,12 @@
+package com.communityevents.database;
+
+import com.communityevents.lifecycle.ServiceUnavailableException;
+
+// The database is down, too slow or saturated; requests get a 503 instead of an empty result
+public class DatabaseUnavailableException extends ServiceUnavailableException {
+    private static final long serialVersionUID = 1L;
+
+    public DatabaseUnavailableException(String message, int retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
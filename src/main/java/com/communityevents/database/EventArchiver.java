@@ -0,0 +1,161 @@
+package com.communityevents.database;
+
+import com.communityevents.logging.ErrorReporter;
+import com.communityevents.search.TimeIndex;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves events dated more than ARCHIVE_AFTER_DAYS days ago, together with
+ * their comments and RSVPs, into events_archive, comments_archive and
+ * rsvps_archive, so the live
+ * tables and their indexes stay the size of the recent and upcoming events
+ * however much history accumulates. Lookups by id (event details, comments)
+ * fall back to the archive; listings and searches only see live events.
+ *
+ * Every ARCHIVE_INTERVAL_MS the job moves batches of ARCHIVE_BATCH_SIZE
+ * events until none are left. A batch is one statement: the DELETE from
+ * events and the archive INSERTs are CTEs reading the same snapshot, which
+ * still holds the comments and RSVPs that ON DELETE CASCADE then removes from
+ * the live tables. The archived rsvp_count is recounted from those RSVPs, as
+ * increments not yet flushed by RsvpCounter would be lost otherwise. Rows are
+ * picked with SKIP LOCKED, so every node can run the job. Each community's
+ * shard is archived in turn. Only events with a
+ * YYYY-MM-DD date are archived; dates in other formats cannot be compared.
+ */
+class EventArchiver {
+    private static final Logger log = LoggerFactory.getLogger(EventArchiver.class);
+    private static final ErrorReporter errors = ErrorReporter.forClass(EventArchiver.class);
+    private static final String COMMENT_COLUMNS = "id, event_id, user_id, text, user_name, timestamp";
+    private static final String ARCHIVE =
+            "WITH moved AS (DELETE FROM events WHERE id IN (" +
+            "SELECT id FROM events WHERE date ~ '^[0-9]{4}-[0-9]{2}-[0-9]{2}$' AND date < ? " +
+            "ORDER BY date LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING " + Database.EVENT_COLUMNS + "), " +
+            "archived_events AS (INSERT INTO events_archive (" + Database.EVENT_COLUMNS + ") " +
+            "SELECT " + Database.EVENT_COLUMNS.replace("rsvp_count",
+                    "(SELECT COUNT(*) FROM rsvps r WHERE r.event_id = moved.id)") + " FROM moved), " +
+            "archived_comments AS (INSERT INTO comments_archive (" + COMMENT_COLUMNS + ") " +
+            "SELECT c.id, c.event_id, c.user_id, c.text, c.user_name, c.timestamp " +
+            "FROM comments c JOIN moved m ON c.event_id = m.id), " +
+            "archived_rsvps AS (INSERT INTO rsvps_archive (event_id, user_id, created_at) " +
+            "SELECT r.event_id, r.user_id, r.created_at FROM rsvps r JOIN moved m ON r.event_id = m.id) " +
+            "SELECT id, category FROM moved";
+
+    // Told about each archived event so in-memory indexes and caches can drop it
+    interface Listener {
+        void archived(int eventId, String category);
+    }
+
+    private final DatabaseConnectionManager connectionManager;
+    private final Listener listener;
+    private final int afterDays;
+    private final int batchSize;
+    private final ZoneId zone;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong archivedTotal = new AtomicLong();
+    private volatile long lastRunAt;
+
+    EventArchiver(DatabaseConnectionManager connectionManager, Listener listener, int afterDays,
+                  int batchSize, long intervalMillis) {
+        this.connectionManager = connectionManager;
+        this.listener = listener;
+        this.afterDays = afterDays;
+        this.batchSize = batchSize;
+        this.zone = TimeIndex.zoneFromEnvironment();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::archive, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Null unless ARCHIVE_AFTER_DAYS is set: archived events drop out of listings
+    static EventArchiver fromEnvironment(DatabaseConnectionManager connectionManager, Listener listener) {
+        long afterDays = longFromEnvironment("ARCHIVE_AFTER_DAYS", 0);
+        if (afterDays <= 0) {
+            return null;
+        }
+        return new EventArchiver(connectionManager, listener, (int) afterDays,
+                (int) Math.max(1, longFromEnvironment("ARCHIVE_BATCH_SIZE", 500)),
+                Math.max(1000, longFromEnvironment("ARCHIVE_INTERVAL_MS", 3600000)));
+    }
+
+    private static long longFromEnvironment(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    // Moves every event past the cutoff, a batch per statement; returns how many were moved
+    int archive() {
+        String cutoff = LocalDate.now(zone).minusDays(afterDays).toString();
+        int moved = 0;
+        for (String community : connectionManager.getCommunities()) {
+            try {
+                int batch;
+                do {
+                    batch = archiveBatch(community, cutoff);
+                    moved += batch;
+                } while (batch == batchSize && !Thread.currentThread().isInterrupted());
+            } catch (SQLException | RuntimeException e) {
+                // Anything escaping would stop scheduleWithFixedDelay from running the job again
+                errors.report("Error archiving past events", e);
+            }
+        }
+        lastRunAt = System.currentTimeMillis();
+        if (moved > 0) {
+            archivedTotal.addAndGet(moved);
+            log.info("Archived {} events dated before {}", moved, cutoff);
+        }
+        return moved;
+    }
+
+    private int archiveBatch(String community, String cutoff) throws SQLException {
+        int moved = 0;
+        try (Connection conn = connectionManager.getConnection(community);
+             PreparedStatement stmt = conn.prepareStatement(ARCHIVE)) {
+            stmt.setString(1, cutoff);
+            stmt.setInt(2, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    listener.archived(rs.getInt("id"), rs.getString("category"));
+                    moved++;
+                }
+            }
+        }
+        return moved;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("afterDays", afterDays);
+        stats.put("archived", archivedTotal.get());
+        stats.put("lastRunAt", lastRunAt);
+        return stats;
+    }
+
+    void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,57 @@
+package com.communityevents.database;
+
+import com.communityevents.model.Event;
+
+/**
+ * Outcome of a conditional event update or delete. The ownership and version
+ * checks run in the same statement as the write, so the reason a write did
+ * not happen comes back with it instead of from a separate read.
+ */
+public class EventWriteResult {
+    public enum Status { DONE, NOT_FOUND, FORBIDDEN, CONFLICT, FAILED }
+
+    private final Status status;
+    private final Event event;
+    private final int currentVersion;
+
+    private EventWriteResult(Status status, Event event, int currentVersion) {
+        this.status = status;
+        this.event = event;
+        this.currentVersion = currentVersion;
+    }
+
+    public static EventWriteResult done(Event event) {
+        return new EventWriteResult(Status.DONE, event, event.getVersion());
+    }
+
+    public static EventWriteResult notFound() {
+        return new EventWriteResult(Status.NOT_FOUND, null, 0);
+    }
+
+    public static EventWriteResult forbidden() {
+        return new EventWriteResult(Status.FORBIDDEN, null, 0);
+    }
+
+    // The event exists and is the caller's, but is no longer at the version they expected
+    public static EventWriteResult conflict(int currentVersion) {
+        return new EventWriteResult(Status.CONFLICT, null, currentVersion);
+    }
+
+    public static EventWriteResult failed() {
+        return new EventWriteResult(Status.FAILED, null, 0);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // The updated (or deleted) event when the write was done, otherwise null
+    public Event getEvent() {
+        return event;
+    }
+
+    // The event's version after the write, or at the time of a conflict
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,303 @@
+package com.communityevents.database;
+
+import com.communityevents.lifecycle.Deadline;
+import com.communityevents.lifecycle.DeadlineExceededException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out connections through a circuit breaker and bulkheads, one for
+ * reads, one for writes and one for exports, so that a slow or failing database makes requests
+ * fail fast with DatabaseUnavailableException instead of tying up every
+ * request thread in Hikari's connection timeout.
+ *
+ * The returned connection is a proxy. It notices infrastructure failures
+ * (see isUnavailable) thrown by the connection, its statements and their
+ * result sets, and on close it frees the bulkhead slot and reports the call's
+ * outcome and duration to the breaker. Callers keep using plain JDBC.
+ *
+ * When the calling thread has a request Deadline, the bulkhead wait is cut
+ * to the time left, every statement gets a query timeout from it, and a
+ * statement still executing when it expires is cancelled on the server.
+ */
+class GuardedConnections {
+    private static final Logger log = LoggerFactory.getLogger(GuardedConnections.class);
+
+    interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    private final DatabaseConnectionManager connectionManager;
+    private final String community;
+    private final CircuitBreaker breaker;
+    private final Bulkhead reads;
+    private final Bulkhead writes;
+    // Exports hold their connection for the whole download, so they get a few slots of their own
+    private final Bulkhead exports;
+    private final ScheduledThreadPoolExecutor canceller;
+    private final LongAdder cancelled = new LongAdder();
+
+    GuardedConnections(DatabaseConnectionManager connectionManager, String community, CircuitBreaker breaker,
+                       Bulkhead reads, Bulkhead writes, Bulkhead exports) {
+        this.connectionManager = connectionManager;
+        this.community = community;
+        this.breaker = breaker;
+        this.reads = reads;
+        this.writes = writes;
+        this.exports = exports;
+        this.canceller = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "query-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Nearly every cancellation is withdrawn when its statement finishes in time
+        this.canceller.setRemoveOnCancelPolicy(true);
+    }
+
+    // Guards the connections of one community's shard, so one shard's outage leaves the others alone
+    static GuardedConnections fromEnvironment(DatabaseConnectionManager connectionManager, String community) {
+        CircuitBreaker breaker = new CircuitBreaker(
+                intFromEnvironment("CIRCUIT_WINDOW_SIZE", 50),
+                intFromEnvironment("CIRCUIT_MINIMUM_CALLS", 20),
+                intFromEnvironment("CIRCUIT_FAILURE_RATE", 50),
+                intFromEnvironment("CIRCUIT_SLOW_CALL_RATE", 80),
+                intFromEnvironment("CIRCUIT_SLOW_CALL_MS", 2000),
+                intFromEnvironment("CIRCUIT_OPEN_MS", 10000),
+                intFromEnvironment("CIRCUIT_PROBE_CALLS", 3));
+        int maxWaitMillis = intFromEnvironment("DB_BULKHEAD_WAIT_MS", 100);
+        // By default the three bulkheads share out the pool, so no kind of call can take every connection
+        int poolSize = DatabaseConnectionManager.POOL_SIZE;
+        int writes = intFromEnvironment("DB_WRITE_CONCURRENCY", Math.max(1, poolSize / 4));
+        int exports = intFromEnvironment("DB_EXPORT_CONCURRENCY", Math.max(1, poolSize / 5));
+        int reads = intFromEnvironment("DB_READ_CONCURRENCY", Math.max(1, poolSize - writes - exports));
+        if (reads + writes + exports > poolSize) {
+            log.warn("Bulkhead limits of {} ({} reads, {} writes, {} exports) exceed the pool of {} connections",
+                    community, reads, writes, exports, poolSize);
+        }
+        return new GuardedConnections(connectionManager, community, breaker,
+                new Bulkhead(reads, maxWaitMillis),
+                new Bulkhead(writes, maxWaitMillis),
+                new Bulkhead(exports, maxWaitMillis));
+    }
+
+    private static int intFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    Connection readConnection() throws SQLException {
+        return open(reads, () -> connectionManager.getReadConnection(community), true);
+    }
+
+    Connection writeConnection() throws SQLException {
+        return open(writes, () -> connectionManager.getConnection(community), true);
+    }
+
+    // Reads that must see the latest writes, such as user lookups for authentication
+    Connection primaryReadConnection() throws SQLException {
+        return open(reads, () -> connectionManager.getConnection(community), true);
+    }
+
+    // For exports, which legitimately hold a connection for as long as the client takes to download;
+    // they use the export bulkhead so that slow downloads cannot take every read slot
+    Connection streamingConnection() throws SQLException {
+        return open(exports, () -> connectionManager.getReadConnection(community), false);
+    }
+
+    /**
+     * Whether the error means the database cannot serve requests right now
+     * (connection failures, timeouts, cancelled queries, resource exhaustion)
+     * rather than that this statement was wrong.
+     */
+    static boolean isUnavailable(Throwable error) {
+        if (!(error instanceof SQLException)) {
+            return false;
+        }
+        if (error instanceof SQLTransactionRollbackException) {
+            return false;
+        }
+        if (error instanceof SQLTransientException || error instanceof SQLRecoverableException
+                || error instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        String state = ((SQLException) error).getSQLState();
+        return state != null && (state.startsWith("08") || state.startsWith("53")
+                || state.startsWith("57") || state.startsWith("58"));
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("circuit", breaker.getStats());
+        stats.put("reads", reads.getStats());
+        stats.put("writes", writes.getStats());
+        stats.put("exports", exports.getStats());
+        stats.put("cancelledAtDeadline", cancelled.sum());
+        return stats;
+    }
+
+    private Connection open(Bulkhead bulkhead, ConnectionSource source, boolean timed) throws SQLException {
+        Deadline.check();
+        CircuitBreaker.Permit permit = breaker.acquire();
+        if (permit == null) {
+            throw new DatabaseUnavailableException("Database is unavailable", breaker.getRetryAfterSeconds());
+        }
+        if (!bulkhead.tryAcquire(Deadline.remainingMillis())) {
+            breaker.release(permit);
+            Deadline.check();
+            throw new DatabaseUnavailableException("Database is busy", 1);
+        }
+        Call call = new Call(permit, bulkhead, timed, Deadline.remainingNanos());
+        Connection connection;
+        try {
+            connection = source.get();
+        } catch (SQLException | RuntimeException e) {
+            call.failed = isUnavailable(e) && !call.isExpired();
+            call.finish();
+            throw e;
+        }
+        if (call.isExpired()) {
+            // The pool wait used up the budget; nothing is left for a query
+            try {
+                connection.close();
+            } finally {
+                call.finish();
+            }
+            throw new DeadlineExceededException();
+        }
+        return wrap(Connection.class, connection, call);
+    }
+
+    // One guarded use of a connection, from acquiring it to closing it
+    private class Call {
+        final CircuitBreaker.Permit permit;
+        final Bulkhead bulkhead;
+        final boolean timed;
+        final long start = System.nanoTime();
+        // Deadline of the request that opened the connection, if it has one
+        final boolean bounded;
+        final long expiresAt;
+        final AtomicBoolean finished = new AtomicBoolean();
+        volatile boolean failed;
+
+        Call(CircuitBreaker.Permit permit, Bulkhead bulkhead, boolean timed, long remainingNanos) {
+            this.permit = permit;
+            this.bulkhead = bulkhead;
+            this.timed = timed;
+            this.bounded = remainingNanos != Long.MAX_VALUE;
+            this.expiresAt = bounded ? start + remainingNanos : 0;
+        }
+
+        boolean isExpired() {
+            return bounded && expiresAt - System.nanoTime() <= 0;
+        }
+
+        // Query timeouts have a granularity of seconds; the cancellation below is exact
+        void applyQueryTimeout(Statement statement) throws SQLException {
+            if (bounded) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime());
+                statement.setQueryTimeout((int) Math.max(1, (remainingMillis + 999) / 1000));
+            }
+        }
+
+        // Cancels the statement on the server if it is still executing at the deadline
+        ScheduledFuture<?> cancelAtDeadline(Statement statement) {
+            if (!bounded) {
+                return null;
+            }
+            long remaining = expiresAt - System.nanoTime();
+            if (remaining <= 0) {
+                throw new DeadlineExceededException();
+            }
+            return canceller.schedule(() -> {
+                try {
+                    statement.cancel();
+                    cancelled.increment();
+                } catch (SQLException e) {
+                    log.warn("Error cancelling a statement past its deadline: {}", e.getMessage());
+                }
+            }, remaining, TimeUnit.NANOSECONDS);
+        }
+
+        void finish() {
+            if (finished.compareAndSet(false, true)) {
+                bulkhead.release();
+                long millis = timed ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) : 0;
+                breaker.onResult(permit, failed, millis);
+            }
+        }
+    }
+
+    private static <T> T wrap(Class<T> type, T target, Call call) {
+        return type.cast(Proxy.newProxyInstance(GuardedConnections.class.getClassLoader(),
+                new Class<?>[] {type}, new Observer(target, call)));
+    }
+
+    // Forwards to the JDBC object, watching for failures and wrapping the statements and result sets it returns
+    private static class Observer implements InvocationHandler {
+        private final Object target;
+        private final Call call;
+
+        Observer(Object target, Call call) {
+            this.target = target;
+            this.call = call;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean closesConnection = target instanceof Connection && method.getName().equals("close");
+            ScheduledFuture<?> cancellation = null;
+            if (target instanceof Statement && method.getName().startsWith("execute")) {
+                cancellation = call.cancelAtDeadline((Statement) target);
+            }
+            try {
+                Object result = method.invoke(target, args);
+                if (result instanceof Statement) {
+                    call.applyQueryTimeout((Statement) result);
+                }
+                Class<?> type = method.getReturnType();
+                if (result != null && (Statement.class.isAssignableFrom(type) || type == ResultSet.class)) {
+                    return wrap(castType(type), result, call);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                // A statement cancelled at its request's deadline says nothing about the database's health
+                if (isUnavailable(e.getCause()) && !call.isExpired()) {
+                    call.failed = true;
+                }
+                throw e.getCause();
+            } finally {
+                if (cancellation != null) {
+                    cancellation.cancel(false);
+                }
+                if (closesConnection) {
+                    call.finish();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Class<Object> castType(Class<?> type) {
+            return (Class<Object>) type;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.communityevents.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the numbered SQL migrations listed in db/migration/index.txt.
+ *
+ * Applied versions are recorded in schema_version together with a checksum of
+ * the file. When every migration is already recorded the runner only reads that
+ * table; otherwise it takes a transaction-scoped advisory lock so that nodes
+ * starting at the same time apply each migration exactly once.
+ *
+ * On a community shard other than the default one the id sequences are moved
+ * to the shard's id range as soon as the tables exist, before any rows are
+ * written, and the sample data is not seeded. Every start then checks that
+ * the shard holds no ids outside its range, since ids decide which shard is
+ * asked for a row.
+ */
+class MigrationRunner {
+    private static final Logger log = LoggerFactory.getLogger(MigrationRunner.class);
+    private static final String MIGRATION_DIR = "db/migration/";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    // Arbitrary application-wide key for pg_advisory_xact_lock
+    private static final long ADVISORY_LOCK_KEY = 0x436f6d6d45766e74L;
+    // Migrations that only add sample data; shards other than the default one start empty
+    private static final Set<Integer> SAMPLE_DATA_VERSIONS = Set.of(2);
+    // Tables whose ids name their shard, with their id column
+    private static final String[][] ID_COLUMNS = {
+            {"users", "user_id"}, {"events", "id"}, {"comments", "id"},
+            {"events_archive", "id"}, {"comments_archive", "id"}};
+
+    static class Migration {
+        final int version;
+        final String description;
+        final String sql;
+        final long checksum;
+
+        Migration(int version, String description, String sql) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            CRC32 crc = new CRC32();
+            crc.update(sql.getBytes(StandardCharsets.UTF_8));
+            this.checksum = crc.getValue();
+        }
+    }
+
+    private final DatabaseConnectionManager connectionManager;
+    private final String community;
+    private final boolean defaultShard;
+    // Ids of this shard are in [firstId, firstId + SHARD_ID_RANGE)
+    private final long firstId;
+
+    // Migrates the database of one community's shard
+    MigrationRunner(DatabaseConnectionManager connectionManager, String community) {
+        this.connectionManager = connectionManager;
+        this.community = community;
+        int shard = connectionManager.getShardNumber(community);
+        this.defaultShard = shard == 0;
+        this.firstId = (long) shard * DatabaseConnectionManager.SHARD_ID_RANGE;
+    }
+
+    /**
+     * Brings the schema up to date and returns the number of migrations applied,
+     * which is zero (and involves no DDL) when the schema is already current.
+     */
+    int migrate() throws SQLException {
+        List<Migration> migrations = loadMigrations();
+
+        try (Connection conn = connectionManager.getConnection(community)) {
+            int applied = 0;
+            if (!isCurrent(conn, migrations)) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    applied = applyPending(conn, migrations);
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }
+            verifyIdRange(conn);
+            return applied;
+        }
+    }
+
+    private boolean isCurrent(Connection conn, List<Migration> migrations) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT to_regclass('schema_version') IS NOT NULL")) {
+            if (!rs.next() || !rs.getBoolean(1)) {
+                return false;
+            }
+        }
+        Map<Integer, Long> applied = readApplied(conn);
+        verifyChecksums(migrations, applied);
+        return applied.keySet().containsAll(versionsOf(migrations));
+    }
+
+    private int applyPending(Connection conn, List<Migration> migrations) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SELECT pg_advisory_xact_lock(" + ADVISORY_LOCK_KEY + ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INTEGER PRIMARY KEY, " +
+                    "description VARCHAR(255) NOT NULL, " +
+                    "checksum BIGINT NOT NULL, " +
+                    "execution_ms INTEGER NOT NULL, " +
+                    "installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+        }
+
+        // Re-read under the lock: another node may have migrated while we waited
+        Map<Integer, Long> applied = readApplied(conn);
+        verifyChecksums(migrations, applied);
+
+        int count = 0;
+        reserveIdRange(conn);
+        for (Migration migration : migrations) {
+            if (applied.containsKey(migration.version)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            if (defaultShard || !SAMPLE_DATA_VERSIONS.contains(migration.version)) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(migration.sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Migration V" + migration.version + " (" + migration.description
+                            + ") failed: " + e.getMessage(), e.getSQLState(), e);
+                }
+                // Before the next migration can add rows
+                reserveIdRange(conn);
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+                stmt.setInt(1, migration.version);
+                stmt.setString(2, migration.description);
+                stmt.setLong(3, migration.checksum);
+                stmt.setInt(4, (int) elapsedMillis);
+                stmt.executeUpdate();
+            }
+            log.info("Applied migration V{} {} in {} ms", migration.version, migration.description, elapsedMillis);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Moves the id sequences of the tables that exist so far to the start of
+     * the shard's range, unless they already hand out ids in it. Nothing to
+     * do on the default shard, whose range starts at 1.
+     */
+    private void reserveIdRange(Connection conn) throws SQLException {
+        if (defaultShard) {
+            return;
+        }
+        for (String[] column : ID_COLUMNS) {
+            if (column[0].endsWith("_archive") || !tableExists(conn, column[0])) {
+                // Archive tables take the ids of the rows moved into them
+                continue;
+            }
+            String sql = "SELECT setval(pg_get_serial_sequence('" + column[0] + "', '" + column[1] + "'), ?, false) " +
+                         "WHERE NOT EXISTS (SELECT 1 FROM " + column[0] + " WHERE " + column[1] + " >= ?)";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, firstId);
+                stmt.setLong(2, firstId);
+                stmt.executeQuery().close();
+            }
+        }
+    }
+
+    // Refuses to start on a shard holding rows that ids would route to another shard
+    private void verifyIdRange(Connection conn) throws SQLException {
+        for (String[] column : ID_COLUMNS) {
+            if (!tableExists(conn, column[0])) {
+                continue;
+            }
+            String sql = "SELECT MIN(" + column[1] + "), MAX(" + column[1] + ") FROM " + column[0] +
+                         " WHERE " + column[1] + " < ? OR " + column[1] + " >= ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, firstId);
+                stmt.setLong(2, firstId + DatabaseConnectionManager.SHARD_ID_RANGE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next() && rs.getObject(1) != null) {
+                        throw new IllegalStateException("Shard " + community + " holds " + column[0] + " ids "
+                                + rs.getLong(1) + ".." + rs.getLong(2) + " outside its range " + firstId + ".."
+                                + (firstId + DatabaseConnectionManager.SHARD_ID_RANGE - 1));
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private Map<Integer, Long> readApplied(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private void verifyChecksums(List<Migration> migrations, Map<Integer, Long> applied) {
+        for (Migration migration : migrations) {
+            Long checksum = applied.get(migration.version);
+            if (checksum != null && checksum != migration.checksum) {
+                throw new IllegalStateException("Migration V" + migration.version + " (" + migration.description
+                        + ") was modified after it was applied");
+            }
+        }
+    }
+
+    private static Set<Integer> versionsOf(List<Migration> migrations) {
+        Set<Integer> versions = new HashSet<>();
+        for (Migration migration : migrations) {
+            versions.add(migration.version);
+        }
+        return versions;
+    }
+
+    static List<Migration> loadMigrations() {
+        List<Migration> migrations = new ArrayList<>();
+        String index = readResource(MIGRATION_DIR + "index.txt");
+        for (String line : index.split("\n")) {
+            String fileName = line.trim();
+            if (fileName.isEmpty() || fileName.startsWith("#")) {
+                continue;
+            }
+            Matcher matcher = FILE_NAME.matcher(fileName);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Invalid migration file name: " + fileName);
+            }
+            migrations.add(new Migration(Integer.parseInt(matcher.group(1)),
+                    matcher.group(2).replace('_', ' '), readResource(MIGRATION_DIR + fileName)));
+        }
+        migrations.sort(Comparator.comparingInt(m -> m.version));
+        return migrations;
+    }
+
+    private static String readResource(String path) {
+        try (InputStream in = MigrationRunner.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing migration resource: " + path);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read migration resource: " + path, e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.communityevents.database;
+
+import com.communityevents.logging.ErrorReporter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps events.rsvp_count off the RSVP hot path.
+ *
+ * Each RSVP is its own row in rsvps, so concurrent RSVPs to one event don't
+ * contend on a lock. The change is also added to a per-event LongAdder, and
+ * readers see rsvp_count plus that pending delta. Every flush interval one
+ * UPDATE recounts rsvp_count from rsvps for all events that changed, so the
+ * column is exact after each flush no matter how many nodes wrote or whether
+ * a node died with deltas still pending. Events are recounted on the shard
+ * their id belongs to.
+ */
+class RsvpCounter {
+    private static final Logger log = LoggerFactory.getLogger(RsvpCounter.class);
+    private static final ErrorReporter errors = ErrorReporter.forClass(RsvpCounter.class);
+    private static final String RECOUNT =
+            "UPDATE events e SET rsvp_count = c.total FROM (" +
+            "SELECT ids.id, (SELECT COUNT(*) FROM rsvps r WHERE r.event_id = ids.id) AS total " +
+            "FROM unnest(?::integer[]) AS ids(id)) c " +
+            "WHERE e.id = c.id AND e.rsvp_count <> c.total";
+    private static final String RECOUNT_ALL =
+            "UPDATE events e SET rsvp_count = COALESCE(c.total, 0) FROM events x " +
+            "LEFT JOIN (SELECT event_id, COUNT(*) AS total FROM rsvps GROUP BY event_id) c ON c.event_id = x.id " +
+            "WHERE e.id = x.id AND e.rsvp_count <> COALESCE(c.total, 0)";
+
+    private final DatabaseConnectionManager connectionManager;
+    private final Map<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    RsvpCounter(DatabaseConnectionManager connectionManager, long flushIntervalMillis) {
+        this.connectionManager = connectionManager;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rsvp-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static RsvpCounter fromEnvironment(DatabaseConnectionManager connectionManager) {
+        long flushIntervalMillis = 1000;
+        String interval = System.getenv("RSVP_FLUSH_MS");
+        if (interval != null && !interval.isEmpty()) {
+            try {
+                flushIntervalMillis = Math.max(10, Long.parseLong(interval.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid RSVP_FLUSH_MS: {}", interval);
+            }
+        }
+        return new RsvpCounter(connectionManager, flushIntervalMillis);
+    }
+
+    // Records an RSVP (+1) or a cancellation (-1) whose row change has committed
+    void add(int eventId, int delta) {
+        pending.computeIfAbsent(eventId, id -> new LongAdder()).add(delta);
+    }
+
+    // Change not yet reflected in events.rsvp_count
+    long pendingDelta(int eventId) {
+        LongAdder adder = pending.get(eventId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    void forget(int eventId) {
+        pending.remove(eventId);
+    }
+
+    // Fixes counts left stale by a previous run that stopped before flushing
+    void reconcileAll() throws SQLException {
+        for (String community : connectionManager.getCommunities()) {
+            try (Connection conn = connectionManager.getConnection(community);
+                 PreparedStatement stmt = conn.prepareStatement(RECOUNT_ALL)) {
+                int fixed = stmt.executeUpdate();
+                if (fixed > 0) {
+                    log.info("Reconciled RSVP counts of {} events in {}", fixed, community);
+                }
+            }
+        }
+    }
+
+    synchronized void flush() {
+        Map<Integer, Long> flushed = new HashMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta != 0) {
+                flushed.put(entry.getKey(), delta);
+            }
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Integer>> idsByCommunity = new HashMap<>();
+        for (Integer eventId : flushed.keySet()) {
+            idsByCommunity.computeIfAbsent(connectionManager.communityOfId(eventId), community -> new ArrayList<>())
+                    .add(eventId);
+        }
+        for (Map.Entry<String, List<Integer>> shard : idsByCommunity.entrySet()) {
+            try (Connection conn = connectionManager.getConnection(shard.getKey());
+                 PreparedStatement stmt = conn.prepareStatement(RECOUNT)) {
+                stmt.setArray(1, conn.createArrayOf("integer", shard.getValue().toArray(new Integer[0])));
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                errors.report("Error flushing RSVP counts", e);
+                // Deltas stay pending, so the next flush recounts the same events
+                continue;
+            }
+
+            // Only now take the flushed deltas out. An RSVP that committed during the recount
+            // is briefly counted twice (in the column and still pending) until the next flush,
+            // instead of briefly missing.
+            for (Integer eventId : shard.getValue()) {
+                LongAdder adder = pending.get(eventId);
+                if (adder != null) {
+                    adder.add(-flushed.get(eventId));
+                }
+            }
+        }
+    }
+
+    void close() {
+        flusher.shutdownNow();
+        flush();
+    }
+}
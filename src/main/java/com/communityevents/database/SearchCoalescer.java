@@ -0,0 +1,195 @@
+package com.communityevents.database;
+
+import com.communityevents.lifecycle.Deadline;
+import com.communityevents.lifecycle.DeadlineExceededException;
+import com.communityevents.model.Event;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collapses identical concurrent searches into a single query.
+ *
+ * Callers with the same normalized filter map share one in-flight result. When
+ * SEARCH_CACHE_TTL_MS is set, finished results are also kept for that long and
+ * dropped as soon as an event in a matching category is written.
+ *
+ * Only searches read from a replica, or from the primary when there are no
+ * replicas, come through here; requests pinned to the primary after a write
+ * bypass it. A replica may not have the write yet for replicaLagMillis after an
+ * invalidation, so replica results loaded in that window are not cached.
+ */
+class SearchCoalescer {
+    private static final Logger log = LoggerFactory.getLogger(SearchCoalescer.class);
+    private static final int MAX_CACHED_RESULTS = 1024;
+
+    interface Loader {
+        List<Event> load(Map<String, String> filters) throws SQLException;
+    }
+
+    private static class CachedResult {
+        final List<Event> events;
+        final String category;
+        final long expiresAt;
+
+        CachedResult(List<Event> events, String category, long expiresAt) {
+            this.events = events;
+            this.category = category;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<Map<String, String>, CompletableFuture<List<Event>>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Map<String, String>, CachedResult> cache = new ConcurrentHashMap<>();
+    private final AtomicLong writeGeneration = new AtomicLong();
+    private volatile long lastInvalidatedAt;
+    private final long ttlMillis;
+    private final long replicaLagMillis;
+
+    SearchCoalescer(long replicaLagMillis) {
+        this(readTtlFromEnvironment(), replicaLagMillis);
+    }
+
+    SearchCoalescer(long ttlMillis, long replicaLagMillis) {
+        this.ttlMillis = ttlMillis;
+        this.replicaLagMillis = replicaLagMillis;
+    }
+
+    private static long readTtlFromEnvironment() {
+        String ttl = System.getenv("SEARCH_CACHE_TTL_MS");
+        if (ttl == null || ttl.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(ttl.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid SEARCH_CACHE_TTL_MS: {}", ttl);
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the events matching the filters, running the loader at most once
+     * for all concurrent callers with the same normalized filters. The returned
+     * list is shared and must not be modified. fromReplica tells whether the
+     * loader reads from a replica.
+     */
+    List<Event> search(Map<String, String> filters, boolean fromReplica, Loader loader) throws SQLException {
+        // The normalized map itself is the key, so no two distinct filter sets collide
+        Map<String, String> key = normalize(filters);
+
+        if (ttlMillis > 0) {
+            CachedResult cached = cache.get(key);
+            if (cached != null) {
+                if (cached.expiresAt > System.currentTimeMillis()) {
+                    return cached.events;
+                }
+                cache.remove(key, cached);
+            }
+        }
+
+        CompletableFuture<List<Event>> mine = new CompletableFuture<>();
+        CompletableFuture<List<Event>> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        long generation = writeGeneration.get();
+        boolean cacheable = !fromReplica || System.currentTimeMillis() - lastInvalidatedAt >= replicaLagMillis;
+        try {
+            List<Event> events = Collections.unmodifiableList(loader.load(key));
+            if (ttlMillis > 0 && cacheable && generation == writeGeneration.get()) {
+                store(key, new CachedResult(events, key.get("category"),
+                        System.currentTimeMillis() + ttlMillis));
+            }
+            mine.complete(events);
+            return events;
+        } catch (SQLException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Drops cached results that may contain events of the given category, i.e.
+     * results filtered on that category and results not filtered on category.
+     */
+    void invalidateCategory(String category) {
+        lastInvalidatedAt = System.currentTimeMillis();
+        writeGeneration.incrementAndGet();
+        // Searches that started before the write must not be joined by new callers
+        inFlight.clear();
+        String normalizedCategory = category == null ? null : category.toLowerCase();
+        cache.values().removeIf(cached -> cached.category == null
+                || cached.category.equals(normalizedCategory));
+    }
+
+    private void store(Map<String, String> key, CachedResult result) {
+        if (cache.size() >= MAX_CACHED_RESULTS) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(cached -> cached.expiresAt <= now);
+            if (cache.size() >= MAX_CACHED_RESULTS) {
+                return;
+            }
+        }
+        cache.put(key, result);
+    }
+
+    // Waits for another caller's search, but no longer than this request's own deadline
+    private List<Event> await(CompletableFuture<List<Event>> future) throws SQLException {
+        try {
+            if (!Deadline.isSet()) {
+                return future.get();
+            }
+            return future.get(Math.max(0, Deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for search results", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Search failed", cause);
+        }
+    }
+
+    // Blank filters are dropped and the case-insensitive ones lowercased, so that
+    // requests which produce the same SQL also produce the same key.
+    static Map<String, String> normalize(Map<String, String> filters) {
+        Map<String, String> normalized = new TreeMap<>();
+        if (filters == null) {
+            return Collections.unmodifiableMap(normalized);
+        }
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            String value = filter.getValue();
+            if (filter.getKey() == null || value == null || value.trim().isEmpty()) {
+                continue;
+            }
+            switch (filter.getKey()) {
+                case "keyword":
+                case "category":
+                case "location":
+                    normalized.put(filter.getKey(), value.toLowerCase());
+                    break;
+                default:
+                    normalized.put(filter.getKey(), value);
+            }
+        }
+        return Collections.unmodifiableMap(normalized);
+    }
+}
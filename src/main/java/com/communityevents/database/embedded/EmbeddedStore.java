@@ -0,0 +1,605 @@
+package com.communityevents.database.embedded;
+
+import com.communityevents.database.EventWriteResult;
+import com.communityevents.logging.ErrorReporter;
+import com.communityevents.model.Comment;
+import com.communityevents.model.Event;
+import com.communityevents.model.User;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Events, comments, users and RSVPs held in memory and persisted in a LogStore,
+ * for deployments without Postgres (DB_MODE=embedded).
+ *
+ * Every change is appended to the log before it is applied in memory, so reads
+ * never touch the disk and a change is visible only once it is durable. Opening
+ * the store replays the snapshot and log to rebuild the maps. A snapshot of the
+ * live records is taken every EMBEDDED_SNAPSHOT_RECORDS changes and on close,
+ * which also compacts the log.
+ *
+ * Callers get copies of the stored objects, as with rows read over JDBC.
+ * The store holds a single community, whose name the copies carry.
+ */
+public class EmbeddedStore {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedStore.class);
+    private static final ErrorReporter errors = ErrorReporter.forClass(EmbeddedStore.class);
+    private static final byte PUT_EVENT = 1;
+    private static final byte DELETE_EVENT = 2;
+    private static final byte PUT_COMMENT = 3;
+    private static final byte DELETE_COMMENT = 4;
+    private static final byte PUT_USER = 5;
+    private static final byte PUT_RSVP = 6;
+    private static final byte DELETE_RSVP = 7;
+
+    private static final TypeReference<Map<String, Object>> RECORD = new TypeReference<Map<String, Object>>() {};
+    private static final Comparator<Event> BY_DATE_AND_TIME = Comparator
+            .comparing(Event::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Event::getTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(Event::getId);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LogStore log;
+    private final long snapshotEvery;
+    private final String community;
+
+    private final Map<Integer, Event> events = new HashMap<>();
+    private final Map<Integer, Comment> comments = new HashMap<>();
+    private final Map<Integer, NavigableSet<Integer>> commentsByEvent = new HashMap<>();
+    private final Map<Integer, User> users = new HashMap<>();
+    private final Map<String, Integer> usersByEmail = new HashMap<>();
+    private final Map<Integer, Set<Integer>> rsvps = new HashMap<>();
+    private int lastEventId;
+    private int lastCommentId;
+    private int lastUserId;
+
+    private EmbeddedStore(LogStore log, long snapshotEvery, String community) {
+        this.log = log;
+        this.snapshotEvery = snapshotEvery;
+        this.community = community;
+    }
+
+    /**
+     * Opens the store in EMBEDDED_STORE_DIR (default ./data), tuned by
+     * EMBEDDED_SEGMENT_BYTES, EMBEDDED_SNAPSHOT_RECORDS and EMBEDDED_FSYNC.
+     */
+    public static EmbeddedStore openFromEnvironment(String community) throws IOException {
+        String directory = System.getenv("EMBEDDED_STORE_DIR");
+        if (directory == null || directory.isEmpty()) {
+            directory = "data";
+        }
+        int segmentBytes = (int) longFromEnvironment("EMBEDDED_SEGMENT_BYTES", 16 << 20);
+        long snapshotEvery = longFromEnvironment("EMBEDDED_SNAPSHOT_RECORDS", 10000);
+        boolean fsync = !"false".equalsIgnoreCase(System.getenv("EMBEDDED_FSYNC"));
+        return open(Paths.get(directory), segmentBytes, snapshotEvery, fsync, community);
+    }
+
+    public static EmbeddedStore open(Path directory, int segmentBytes, long snapshotEvery, boolean fsync,
+                                     String community) throws IOException {
+        EmbeddedStore store = new EmbeddedStore(new LogStore(directory, segmentBytes, fsync), snapshotEvery, community);
+        store.log.open(store::apply);
+        return store;
+    }
+
+    private static long longFromEnvironment(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid {}: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    // Events
+
+    // All events ordered by date and time, like ORDER BY date, time
+    public List<Event> getEvents() {
+        lock.readLock().lock();
+        try {
+            List<Event> result = new ArrayList<>(events.size());
+            for (Event event : events.values()) {
+                result.add(copyOf(event));
+            }
+            result.sort(BY_DATE_AND_TIME);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Event getEvent(int eventId) {
+        lock.readLock().lock();
+        try {
+            Event event = events.get(eventId);
+            return event == null ? null : copyOf(event);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Event saveEvent(Event data) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Event event = copyOf(data);
+            event.setId(lastEventId + 1);
+            event.setVersion(1);
+            write(PUT_EVENT, encodeEvent(event));
+            return copyOf(events.get(event.getId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Updates the editable fields if userId created the event and, when expectedVersion is given, it is still at that version
+    public EventWriteResult updateEvent(int eventId, int userId, Integer expectedVersion, Event data) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Event current = events.get(eventId);
+            EventWriteResult refused = checkWrite(current, userId, expectedVersion);
+            if (refused != null) {
+                return refused;
+            }
+            Event event = copyOf(data);
+            event.setId(eventId);
+            event.setCreatorId(current.getCreatorId());
+            event.setVersion(current.getVersion() + 1);
+            write(PUT_EVENT, encodeEvent(event));
+            return EventWriteResult.done(copyOf(events.get(eventId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Deletes the event with its comments and RSVPs, under the same conditions as updateEvent
+    public EventWriteResult deleteEvent(int eventId, int userId, Integer expectedVersion) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Event current = events.get(eventId);
+            EventWriteResult refused = checkWrite(current, userId, expectedVersion);
+            if (refused != null) {
+                return refused;
+            }
+            Event deleted = copyOf(current);
+            write(DELETE_EVENT, encode(Map.of("id", eventId)));
+            return EventWriteResult.done(deleted);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static EventWriteResult checkWrite(Event current, int userId, Integer expectedVersion) {
+        if (current == null) {
+            return EventWriteResult.notFound();
+        }
+        if (current.getCreatorId() != userId) {
+            return EventWriteResult.forbidden();
+        }
+        if (expectedVersion != null && current.getVersion() != expectedVersion) {
+            return EventWriteResult.conflict(current.getVersion());
+        }
+        return null;
+    }
+
+    // RSVPs
+
+    // Returns true when the RSVP was added, false when it existed; null when the event does not exist
+    public Boolean addRsvp(int eventId, int userId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!events.containsKey(eventId)) {
+                return null;
+            }
+            if (rsvps.getOrDefault(eventId, Collections.emptySet()).contains(userId)) {
+                return false;
+            }
+            write(PUT_RSVP, encode(Map.of("eventId", eventId, "userId", userId)));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean removeRsvp(int eventId, int userId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!rsvps.getOrDefault(eventId, Collections.emptySet()).contains(userId)) {
+                return false;
+            }
+            write(DELETE_RSVP, encode(Map.of("eventId", eventId, "userId", userId)));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean hasRsvp(int eventId, int userId) {
+        lock.readLock().lock();
+        try {
+            return rsvps.getOrDefault(eventId, Collections.emptySet()).contains(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getRsvpCount(int eventId) {
+        lock.readLock().lock();
+        try {
+            return rsvps.getOrDefault(eventId, Collections.emptySet()).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Comments
+
+    // Newest first, like ORDER BY timestamp DESC
+    public List<Comment> getCommentsForEvent(int eventId) {
+        lock.readLock().lock();
+        try {
+            List<Comment> result = new ArrayList<>();
+            for (Integer commentId : commentsByEvent.getOrDefault(eventId, Collections.emptyNavigableSet())
+                    .descendingSet()) {
+                result.add(copyOf(comments.get(commentId)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Comment getComment(int commentId) {
+        lock.readLock().lock();
+        try {
+            Comment comment = comments.get(commentId);
+            return comment == null ? null : copyOf(comment);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns null when the event does not exist, as the foreign key would refuse the row
+    public Comment saveComment(int eventId, String text, int userId, String userName) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!events.containsKey(eventId)) {
+                return null;
+            }
+            Comment comment = new Comment(lastCommentId + 1, eventId, userId, text, userName);
+            comment.setTimestamp(LocalDateTime.now().toString());
+            write(PUT_COMMENT, encodeComment(comment));
+            return copyOf(comments.get(comment.getId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Comment editComment(int commentId, String text) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Comment current = comments.get(commentId);
+            if (current == null) {
+                return null;
+            }
+            Comment comment = copyOf(current);
+            comment.setText(text);
+            write(PUT_COMMENT, encodeComment(comment));
+            return copyOf(comments.get(commentId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean deleteComment(int commentId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!comments.containsKey(commentId)) {
+                return false;
+            }
+            write(DELETE_COMMENT, encode(Map.of("id", commentId)));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Users
+
+    public User getUser(String email) {
+        lock.readLock().lock();
+        try {
+            Integer userId = usersByEmail.get(email);
+            return userId == null ? null : copyOf(users.get(userId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public User getUserById(int userId) {
+        lock.readLock().lock();
+        try {
+            User user = users.get(userId);
+            return user == null ? null : copyOf(user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<User> getAllUsers() {
+        lock.readLock().lock();
+        try {
+            List<User> result = new ArrayList<>();
+            for (User user : users.values()) {
+                result.add(copyOf(user));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public User saveUser(User data) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (usersByEmail.containsKey(data.getEmail())) {
+                throw new IllegalArgumentException("Email already exists: " + data.getEmail());
+            }
+            User user = copyOf(data);
+            user.setUserId(lastUserId + 1);
+            write(PUT_USER, encodeUser(user));
+            return copyOf(users.get(user.getUserId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateUserLoginStatus(int userId, boolean loggedIn) throws IOException {
+        lock.writeLock().lock();
+        try {
+            User current = users.get(userId);
+            if (current == null || current.isLoggedIn() == loggedIn) {
+                return;
+            }
+            User user = copyOf(current);
+            user.setLoggedIn(loggedIn);
+            write(PUT_USER, encodeUser(user));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Lifecycle
+
+    // Snapshots (so the next open replays nothing) and closes the log
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (log.getRecordsSinceSnapshot() > 0) {
+                snapshot();
+            }
+            log.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void write(byte type, byte[] payload) throws IOException {
+        log.append(type, payload);
+        apply(type, payload);
+        if (log.getRecordsSinceSnapshot() >= snapshotEvery) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                // The change itself is durable; the log just keeps growing until a snapshot succeeds
+                errors.report("Error writing embedded store snapshot", e);
+            }
+        }
+    }
+
+    private void snapshot() throws IOException {
+        long start = System.nanoTime();
+        log.snapshot(sink -> {
+            for (User user : users.values()) {
+                sink.append(PUT_USER, encodeUser(user));
+            }
+            for (Event event : events.values()) {
+                sink.append(PUT_EVENT, encodeEvent(event));
+            }
+            for (Comment comment : comments.values()) {
+                sink.append(PUT_COMMENT, encodeComment(comment));
+            }
+            for (Map.Entry<Integer, Set<Integer>> attending : rsvps.entrySet()) {
+                for (Integer userId : attending.getValue()) {
+                    sink.append(PUT_RSVP, encode(Map.of("eventId", attending.getKey(), "userId", userId)));
+                }
+            }
+        });
+        logger.info("Embedded store snapshot written in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Applies a record to the in-memory state, both live and during replay
+    private void apply(byte type, byte[] payload) throws IOException {
+        Map<String, Object> record = mapper.readValue(payload, RECORD);
+        switch (type) {
+            case PUT_EVENT: {
+                Event event = decodeEvent(record);
+                events.put(event.getId(), event);
+                lastEventId = Math.max(lastEventId, event.getId());
+                break;
+            }
+            case DELETE_EVENT: {
+                int eventId = intOf(record, "id");
+                events.remove(eventId);
+                rsvps.remove(eventId);
+                NavigableSet<Integer> eventComments = commentsByEvent.remove(eventId);
+                if (eventComments != null) {
+                    comments.keySet().removeAll(eventComments);
+                }
+                break;
+            }
+            case PUT_COMMENT: {
+                Comment comment = decodeComment(record);
+                comments.put(comment.getId(), comment);
+                commentsByEvent.computeIfAbsent(comment.getEventId(), id -> new TreeSet<>()).add(comment.getId());
+                lastCommentId = Math.max(lastCommentId, comment.getId());
+                break;
+            }
+            case DELETE_COMMENT: {
+                Comment removed = comments.remove(intOf(record, "id"));
+                if (removed != null) {
+                    Set<Integer> eventComments = commentsByEvent.get(removed.getEventId());
+                    if (eventComments != null) {
+                        eventComments.remove(removed.getId());
+                    }
+                }
+                break;
+            }
+            case PUT_USER: {
+                User user = decodeUser(record);
+                User previous = users.put(user.getUserId(), user);
+                if (previous != null) {
+                    usersByEmail.remove(previous.getEmail());
+                }
+                usersByEmail.put(user.getEmail(), user.getUserId());
+                lastUserId = Math.max(lastUserId, user.getUserId());
+                break;
+            }
+            case PUT_RSVP:
+                rsvps.computeIfAbsent(intOf(record, "eventId"), id -> new HashSet<>()).add(intOf(record, "userId"));
+                break;
+            case DELETE_RSVP: {
+                Set<Integer> attending = rsvps.get(intOf(record, "eventId"));
+                if (attending != null) {
+                    attending.remove(intOf(record, "userId"));
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    // Encoding. Fields are written explicitly: the model's JSON view omits the password.
+
+    private byte[] encode(Map<String, Object> record) {
+        try {
+            return mapper.writeValueAsBytes(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] encodeEvent(Event event) {
+        Map<String, Object> record = new HashMap<>();
+        record.put("id", event.getId());
+        record.put("title", event.getTitle());
+        record.put("description", event.getDescription());
+        record.put("date", event.getDate());
+        record.put("time", event.getTime());
+        record.put("location", event.getLocation());
+        record.put("category", event.getCategory());
+        record.put("organizer", event.getOrganizer());
+        record.put("creatorId", event.getCreatorId());
+        record.put("latitude", event.getLatitude());
+        record.put("longitude", event.getLongitude());
+        record.put("version", event.getVersion());
+        return encode(record);
+    }
+
+    private static Event decodeEvent(Map<String, Object> record) {
+        Event event = new Event(intOf(record, "id"), (String) record.get("title"), (String) record.get("description"),
+                (String) record.get("date"), (String) record.get("time"), (String) record.get("location"),
+                (String) record.get("category"), (String) record.get("organizer"), intOf(record, "creatorId"));
+        event.setLatitude(doubleOf(record, "latitude"));
+        event.setLongitude(doubleOf(record, "longitude"));
+        // Records written before events had versions start at 1, like the column default
+        Object version = record.get("version");
+        event.setVersion(version == null ? 1 : ((Number) version).intValue());
+        return event;
+    }
+
+    private byte[] encodeComment(Comment comment) {
+        Map<String, Object> record = new HashMap<>();
+        record.put("id", comment.getId());
+        record.put("eventId", comment.getEventId());
+        record.put("userId", comment.getUserId());
+        record.put("text", comment.getText());
+        record.put("userName", comment.getUserName());
+        record.put("timestamp", comment.getTimestamp());
+        return encode(record);
+    }
+
+    private static Comment decodeComment(Map<String, Object> record) {
+        Comment comment = new Comment(intOf(record, "id"), intOf(record, "eventId"), intOf(record, "userId"),
+                (String) record.get("text"), (String) record.get("userName"));
+        comment.setTimestamp((String) record.get("timestamp"));
+        return comment;
+    }
+
+    private byte[] encodeUser(User user) {
+        Map<String, Object> record = new HashMap<>();
+        record.put("userId", user.getUserId());
+        record.put("name", user.getName());
+        record.put("email", user.getEmail());
+        record.put("password", user.getPassword());
+        record.put("loggedIn", user.isLoggedIn());
+        return encode(record);
+    }
+
+    private static User decodeUser(Map<String, Object> record) {
+        User user = new User(intOf(record, "userId"), (String) record.get("name"), (String) record.get("email"),
+                (String) record.get("password"));
+        user.setLoggedIn(Boolean.TRUE.equals(record.get("loggedIn")));
+        return user;
+    }
+
+    private static int intOf(Map<String, Object> record, String field) {
+        return ((Number) record.get(field)).intValue();
+    }
+
+    private static Double doubleOf(Map<String, Object> record, String field) {
+        Object value = record.get(field);
+        return value == null ? null : ((Number) value).doubleValue();
+    }
+
+    private Event copyOf(Event event) {
+        Event copy = new Event(event.getId(), event.getTitle(), event.getDescription(), event.getDate(),
+                event.getTime(), event.getLocation(), event.getCategory(), event.getOrganizer(), event.getCreatorId());
+        copy.setLatitude(event.getLatitude());
+        copy.setLongitude(event.getLongitude());
+        copy.setVersion(event.getVersion());
+        copy.setCommunity(community);
+        copy.setRsvpCount(rsvps.getOrDefault(event.getId(), Collections.emptySet()).size());
+        return copy;
+    }
+
+    private Comment copyOf(Comment comment) {
+        Comment copy = new Comment(comment.getId(), comment.getEventId(), comment.getUserId(),
+                comment.getText(), comment.getUserName());
+        copy.setTimestamp(comment.getTimestamp());
+        copy.setCommunity(community);
+        return copy;
+    }
+
+    private User copyOf(User user) {
+        User copy = new User(user.getUserId(), user.getName(), user.getEmail(), user.getPassword());
+        copy.setLoggedIn(user.isLoggedIn());
+        copy.setCommunity(community);
+        return copy;
+    }
+}
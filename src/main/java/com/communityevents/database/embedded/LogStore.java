@@ -0,0 +1,330 @@
+package com.communityevents.database.embedded;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only record log in fixed-size memory-mapped segment files, plus a
+ * snapshot that replaces every segment before it.
+ *
+ * A record is [int length][int crc32][byte type][payload], where length and
+ * the checksum cover type and payload. Segments are created zero-filled, so a
+ * zero length marks the end of the written part. On open, the snapshot is
+ * loaded and the remaining segments are replayed; a record in the last segment
+ * that is cut short or fails its checksum was torn by a crash, and it and
+ * everything after it are discarded.
+ *
+ * Snapshots are written to a temporary file and atomically renamed, so a crash
+ * while snapshotting leaves the previous snapshot and segments in place.
+ *
+ * Not thread-safe; EmbeddedStore serializes access.
+ */
+public class LogStore {
+    private static final Logger log = LoggerFactory.getLogger(LogStore.class);
+    private static final int HEADER_BYTES = 8;
+    private static final byte SNAPSHOT_START = 126;
+    private static final byte SNAPSHOT_END = 127;
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String SNAPSHOT_TEMP_FILE = "snapshot.tmp";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{10})\\.log");
+
+    // Receives each stored record in order, from the snapshot and then the segments
+    public interface RecordHandler {
+        void apply(byte type, byte[] payload) throws IOException;
+    }
+
+    public interface RecordSink {
+        void append(byte type, byte[] payload) throws IOException;
+    }
+
+    // Writes the records that recreate the current state
+    public interface SnapshotWriter {
+        void write(RecordSink sink) throws IOException;
+    }
+
+    private static class Segment {
+        final long sequence;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        Segment(long sequence, Path path, int size) throws IOException {
+            this.sequence = sequence;
+            this.path = path;
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                if (file.length() < size) {
+                    file.setLength(size);
+                }
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean syncEachWrite;
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long recordsSinceSnapshot;
+
+    public LogStore(Path directory, int segmentBytes, boolean syncEachWrite) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncEachWrite = syncEachWrite;
+    }
+
+    /** Loads the snapshot and replays the log into the handler, repairing a torn tail. */
+    public void open(RecordHandler handler) throws IOException {
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_TEMP_FILE));
+
+        long firstSegment = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            firstSegment = loadSnapshot(snapshot, handler);
+        }
+
+        List<Long> sequences = listSegments();
+        for (int i = 0; i < sequences.size(); i++) {
+            long sequence = sequences.get(i);
+            Path path = segmentPath(sequence);
+            if (sequence < firstSegment) {
+                // Already covered by the snapshot; left over from a crash before cleanup
+                Files.delete(path);
+                continue;
+            }
+            Segment segment = new Segment(sequence, path, segmentBytes);
+            segments.add(segment);
+            replay(segment, handler, i == sequences.size() - 1);
+        }
+
+        if (segments.isEmpty()) {
+            active = new Segment(firstSegment, segmentPath(firstSegment), segmentBytes);
+            active.buffer.position(0);
+            segments.add(active);
+        } else {
+            active = segments.get(segments.size() - 1);
+        }
+    }
+
+    // Durably appends a record; once this returns the record survives a crash
+    public void append(byte type, byte[] payload) throws IOException {
+        if (type == SNAPSHOT_START || type == SNAPSHOT_END) {
+            throw new IllegalArgumentException("Reserved record type: " + type);
+        }
+        int length = 1 + payload.length;
+        if (HEADER_BYTES + length > segmentBytes) {
+            throw new IOException("Record of " + length + " bytes does not fit in a segment");
+        }
+        if (active.buffer.remaining() < HEADER_BYTES + length) {
+            roll();
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+        // Length last: until it is set the slot still reads as the end of the log.
+        // Pages can reach disk out of order, which the checksum catches on replay.
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.putInt(start + 4, checksum(type, payload));
+        buffer.putInt(start, length);
+        if (syncEachWrite) {
+            buffer.force();
+        }
+        recordsSinceSnapshot++;
+    }
+
+    public long getRecordsSinceSnapshot() {
+        return recordsSinceSnapshot;
+    }
+
+    /**
+     * Replaces all existing segments by a snapshot of the state the writer
+     * produces. The caller must not append concurrently.
+     */
+    public void snapshot(SnapshotWriter writer) throws IOException {
+        roll();
+        long firstSegment = active.sequence;
+
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            RecordSink sink = (type, payload) -> writeRecord(out, type, payload);
+            writeRecord(out, SNAPSHOT_START, longBytes(firstSegment));
+            writer.write(sink);
+            writeRecord(out, SNAPSHOT_END, new byte[0]);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        // Compaction: everything before the new active segment now lives in the snapshot
+        List<Segment> compacted = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.sequence < firstSegment) {
+                segment.close();
+                Files.deleteIfExists(segment.path);
+                compacted.add(segment);
+            }
+        }
+        segments.removeAll(compacted);
+        recordsSinceSnapshot = 0;
+    }
+
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void roll() throws IOException {
+        active.buffer.force();
+        long sequence = active.sequence + 1;
+        active = new Segment(sequence, segmentPath(sequence), segmentBytes);
+        active.buffer.position(0);
+        segments.add(active);
+    }
+
+    private void replay(Segment segment, RecordHandler handler, boolean isLast) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            int crc = buffer.getInt(position + 4);
+            boolean valid = length > 0 && position + HEADER_BYTES + length <= buffer.capacity();
+            byte type = 0;
+            byte[] payload = null;
+            if (valid) {
+                type = buffer.get(position + HEADER_BYTES);
+                payload = new byte[length - 1];
+                buffer.position(position + HEADER_BYTES + 1);
+                buffer.get(payload);
+                valid = checksum(type, payload) == crc;
+            }
+            if (!valid) {
+                if (!isLast) {
+                    throw new IOException("Corrupt record in " + segment.path + " at offset " + position);
+                }
+                log.warn("Discarding torn write in {} at offset {}", segment.path, position);
+                zeroFrom(buffer, position);
+                break;
+            }
+            handler.apply(type, payload);
+            recordsSinceSnapshot++;
+            position += HEADER_BYTES + length;
+        }
+        buffer.position(position);
+    }
+
+    private static void zeroFrom(MappedByteBuffer buffer, int position) {
+        for (int i = position; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.force();
+    }
+
+    // Returns the first segment sequence not covered by the snapshot
+    private long loadSnapshot(Path snapshot, RecordHandler handler) throws IOException {
+        try (InputStream file = Files.newInputStream(snapshot);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            byte[][] record = readRecord(in, snapshot);
+            if (record[0][0] != SNAPSHOT_START) {
+                throw new IOException("Snapshot " + snapshot + " has no header");
+            }
+            long firstSegment = ByteBuffer.wrap(record[1]).getLong();
+            while (true) {
+                record = readRecord(in, snapshot);
+                if (record[0][0] == SNAPSHOT_END) {
+                    return firstSegment;
+                }
+                handler.apply(record[0][0], record[1]);
+            }
+        }
+    }
+
+    private static byte[][] readRecord(DataInputStream in, Path source) throws IOException {
+        try {
+            int length = in.readInt();
+            int crc = in.readInt();
+            if (length < 1) {
+                throw new IOException("Invalid record length in " + source);
+            }
+            byte type = in.readByte();
+            byte[] payload = new byte[length - 1];
+            in.readFully(payload);
+            if (checksum(type, payload) != crc) {
+                throw new IOException("Checksum mismatch in " + source);
+            }
+            return new byte[][] {{type}, payload};
+        } catch (EOFException e) {
+            throw new IOException("Truncated file " + source, e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeInt(1 + payload.length);
+        out.writeInt(checksum(type, payload));
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    sequences.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        sequences.sort(null);
+        return sequences;
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("segment-%010d.log", sequence));
+    }
+}
@@ -0,0 +1,85 @@
+package com.communityevents.export;
+
+import com.communityevents.model.Event;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * RFC 4180 CSV: a header row, CRLF line endings, and fields quoted when they
+ * contain a comma, quote or line break.
+ *
+ * User-entered text starting with =, +, -, @, tab or carriage return would be
+ * run as a formula by spreadsheet applications (CSV injection), so such values
+ * get a leading ' that makes the spreadsheet treat them as text.
+ */
+public class CsvExporter implements EventExporter {
+    private static final String HEADER = "id,title,description,date,time,location,category,organizer,latitude,longitude";
+
+    @Override
+    public String getContentType() {
+        return "text/csv; charset=utf-8";
+    }
+
+    @Override
+    public String getFileName() {
+        return "events.csv";
+    }
+
+    @Override
+    public void begin(Writer out) throws IOException {
+        out.write(HEADER);
+        out.write("\r\n");
+    }
+
+    @Override
+    public void write(Writer out, Event event) throws IOException {
+        out.write(String.valueOf(event.getId()));
+        writeField(out, text(event.getTitle()));
+        writeField(out, text(event.getDescription()));
+        writeField(out, text(event.getDate()));
+        writeField(out, text(event.getTime()));
+        writeField(out, text(event.getLocation()));
+        writeField(out, text(event.getCategory()));
+        writeField(out, text(event.getOrganizer()));
+        writeField(out, event.getLatitude() == null ? null : event.getLatitude().toString());
+        writeField(out, event.getLongitude() == null ? null : event.getLongitude().toString());
+        out.write("\r\n");
+    }
+
+    @Override
+    public void end(Writer out) {
+        // No trailer
+    }
+
+    // Neutralizes user-entered text a spreadsheet would evaluate; coordinates are written as they are
+    static String text(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        switch (value.charAt(0)) {
+            case '=':
+            case '+':
+            case '-':
+            case '@':
+            case '\t':
+            case '\r':
+                return "'" + value;
+            default:
+                return value;
+        }
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        out.write(',');
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,21 @@
+package com.communityevents.export;
+
+import com.communityevents.model.Event;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes events in a download format one at a time, so an export never holds
+ * more than the current event in memory.
+ */
+public interface EventExporter {
+    String getContentType();
+
+    String getFileName();
+
+    void begin(Writer out) throws IOException;
+
+    void write(Writer out, Event event) throws IOException;
+
+    void end(Writer out) throws IOException;
+}
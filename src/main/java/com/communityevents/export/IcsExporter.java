@@ -0,0 +1,145 @@
+package com.communityevents.export;
+
+import com.communityevents.model.Event;
+import com.communityevents.search.TimeIndex;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * iCalendar (RFC 5545) feed that calendar clients can subscribe to.
+ *
+ * Start times are read in EVENTS_TIME_ZONE, like the time index, and written
+ * in UTC; events without a readable time become all-day events, and events
+ * without a readable date are left out. Each event keeps a stable UID so
+ * clients update it in place instead of duplicating it.
+ */
+public class IcsExporter implements EventExporter {
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final Duration DEFAULT_DURATION = Duration.ofHours(1);
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final ZoneId zone;
+    private final String stamp;
+
+    public IcsExporter() {
+        this(TimeIndex.zoneFromEnvironment(), Clock.systemUTC());
+    }
+
+    public IcsExporter(ZoneId zone, Clock clock) {
+        this.zone = zone;
+        this.stamp = UTC_TIME.format(LocalDateTime.ofInstant(clock.instant(), ZoneOffset.UTC));
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/calendar; charset=utf-8";
+    }
+
+    @Override
+    public String getFileName() {
+        return "events.ics";
+    }
+
+    @Override
+    public void begin(Writer out) throws IOException {
+        writeLine(out, "BEGIN:VCALENDAR");
+        writeLine(out, "VERSION:2.0");
+        writeLine(out, "PRODID:-//Community Events//Events Export//EN");
+        writeLine(out, "CALSCALE:GREGORIAN");
+        writeLine(out, "METHOD:PUBLISH");
+        writeLine(out, "X-WR-CALNAME:Community Events");
+    }
+
+    @Override
+    public void write(Writer out, Event event) throws IOException {
+        LocalDate date;
+        try {
+            date = event.getDate() == null ? null : LocalDate.parse(event.getDate().trim());
+        } catch (DateTimeParseException e) {
+            date = null;
+        }
+        if (date == null) {
+            return;
+        }
+        LocalTime time = TimeIndex.parseTime(event.getTime());
+
+        writeLine(out, "BEGIN:VEVENT");
+        writeLine(out, "UID:event-" + event.getId() + "@community-events");
+        writeLine(out, "DTSTAMP:" + stamp);
+        if (time == null) {
+            writeLine(out, "DTSTART;VALUE=DATE:" + DATE.format(date));
+            writeLine(out, "DTEND;VALUE=DATE:" + DATE.format(date.plusDays(1)));
+        } else {
+            Instant start = ZonedDateTime.of(date, time, zone).toInstant();
+            writeLine(out, "DTSTART:" + utc(start));
+            writeLine(out, "DTEND:" + utc(start.plus(DEFAULT_DURATION)));
+        }
+        writeText(out, "SUMMARY", event.getTitle());
+        writeText(out, "DESCRIPTION", describe(event));
+        writeText(out, "LOCATION", event.getLocation());
+        writeText(out, "CATEGORIES", event.getCategory());
+        if (event.getLatitude() != null && event.getLongitude() != null) {
+            writeLine(out, "GEO:" + event.getLatitude() + ";" + event.getLongitude());
+        }
+        writeLine(out, "END:VEVENT");
+    }
+
+    @Override
+    public void end(Writer out) throws IOException {
+        writeLine(out, "END:VCALENDAR");
+    }
+
+    private static String utc(Instant instant) {
+        return UTC_TIME.format(LocalDateTime.ofInstant(instant, ZoneOffset.UTC));
+    }
+
+    private static void writeText(Writer out, String name, String value) throws IOException {
+        if (value != null && !value.trim().isEmpty()) {
+            writeLine(out, name + ":" + escape(value));
+        }
+    }
+
+    // TEXT values escape backslashes, separators and line breaks
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\")
+                .replace(";", "\\;")
+                .replace(",", "\\,")
+                .replace("\r\n", "\\n")
+                .replace("\n", "\\n")
+                .replace("\r", "\\n");
+    }
+
+    // ORGANIZER needs a calendar address, which events do not have, so the name goes in the description
+    private static String describe(Event event) {
+        String description = event.getDescription() == null ? "" : event.getDescription().trim();
+        if (event.getOrganizer() == null || event.getOrganizer().trim().isEmpty()) {
+            return description;
+        }
+        String organizer = "Organizer: " + event.getOrganizer().trim();
+        return description.isEmpty() ? organizer : description + "\n\n" + organizer;
+    }
+
+    // Content lines end in CRLF and are folded to at most 75 octets, never splitting a character
+    private static void writeLine(Writer out, String line) throws IOException {
+        int octets = 0;
+        int limit = MAX_LINE_OCTETS;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int width = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (octets + width > limit) {
+                out.write("\r\n ");
+                octets = 0;
+                // The leading space of a continuation line counts towards its length
+                limit = MAX_LINE_OCTETS - 1;
+            }
+            out.write(Character.toChars(codePoint));
+            octets += width;
+            i += Character.charCount(codePoint);
+        }
+        out.write("\r\n");
+    }
+}
@@ -0,0 +1,40 @@
+package com.communityevents.json;
+
+import com.communityevents.model.Comment;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+
+// Writes Comment without reflection; field names are encoded once up front
+public class CommentSerializer extends StdSerializer<Comment> {
+    private static final long serialVersionUID = 1L;
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString EVENT_ID = new SerializedString("eventId");
+    private static final SerializedString USER_ID = new SerializedString("userId");
+    private static final SerializedString TEXT = new SerializedString("text");
+    private static final SerializedString TIMESTAMP = new SerializedString("timestamp");
+    private static final SerializedString USER_NAME = new SerializedString("userName");
+    private static final SerializedString COMMUNITY = new SerializedString("community");
+
+    public CommentSerializer() {
+        super(Comment.class);
+    }
+
+    @Override
+    public void serialize(Comment comment, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        gen.writeNumber(comment.getId());
+        gen.writeFieldName(EVENT_ID);
+        gen.writeNumber(comment.getEventId());
+        gen.writeFieldName(USER_ID);
+        gen.writeNumber(comment.getUserId());
+        JsonCodec.writeString(gen, TEXT, comment.getText());
+        JsonCodec.writeString(gen, TIMESTAMP, comment.getTimestamp());
+        JsonCodec.writeString(gen, USER_NAME, comment.getUserName());
+        JsonCodec.writeString(gen, COMMUNITY, comment.getCommunity());
+        gen.writeEndObject();
+    }
+}
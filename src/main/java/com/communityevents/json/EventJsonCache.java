@@ -0,0 +1,97 @@
+package com.communityevents.json;
+
+import com.communityevents.model.Event;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serialized JSON of each event, so list responses can be assembled from
+ * cached fragments instead of re-encoding every event.
+ *
+ * Entries are keyed by event id and only reused for an Event at the same
+ * version, so an Event read before an update can never be served the newer
+ * bytes or vice versa. The RSVP count changes without a version bump and is
+ * checked as well. At most MAX_ENTRIES events are kept, least recently used
+ * first out; Database also drops entries on update, delete and archiving.
+ */
+public class EventJsonCache {
+    private static final int MAX_ENTRIES = 10000;
+
+    private static EventJsonCache instance;
+    private final Map<Integer, Entry> entries;
+    private final ObjectMapper mapper;
+
+    private static class Entry {
+        final int version;
+        final int rsvpCount;
+        final byte[] json;
+
+        Entry(Event event, byte[] json) {
+            this.version = event.getVersion();
+            this.rsvpCount = event.getRsvpCount();
+            this.json = json;
+        }
+
+        boolean matches(Event event) {
+            return version == event.getVersion() && rsvpCount == event.getRsvpCount();
+        }
+    }
+
+    EventJsonCache(int maxEntries) {
+        this.mapper = JsonCodec.getInstance().getMapper();
+        // Access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static synchronized EventJsonCache getInstance() {
+        if (instance == null) {
+            instance = new EventJsonCache(MAX_ENTRIES);
+        }
+        return instance;
+    }
+
+    // The event's JSON object as UTF-8 bytes; callers must not modify the array
+    public byte[] get(Event event) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(event.getId());
+        }
+        if (entry != null && entry.matches(event)) {
+            return entry.json;
+        }
+
+        // Encoded outside the lock; a concurrent encoder of the same event just writes the same bytes
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (entries) {
+            entries.put(event.getId(), new Entry(event, json));
+        }
+        return json;
+    }
+
+    public void invalidate(int eventId) {
+        synchronized (entries) {
+            entries.remove(eventId);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
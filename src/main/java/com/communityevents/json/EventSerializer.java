@@ -0,0 +1,55 @@
+package com.communityevents.json;
+
+import com.communityevents.model.Event;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+
+// Writes Event without reflection; field names are encoded once up front
+public class EventSerializer extends StdSerializer<Event> {
+    private static final long serialVersionUID = 1L;
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString TITLE = new SerializedString("title");
+    private static final SerializedString DESCRIPTION = new SerializedString("description");
+    private static final SerializedString DATE = new SerializedString("date");
+    private static final SerializedString TIME = new SerializedString("time");
+    private static final SerializedString LOCATION = new SerializedString("location");
+    private static final SerializedString CATEGORY = new SerializedString("category");
+    private static final SerializedString ORGANIZER = new SerializedString("organizer");
+    private static final SerializedString CREATOR_ID = new SerializedString("creatorId");
+    private static final SerializedString LATITUDE = new SerializedString("latitude");
+    private static final SerializedString LONGITUDE = new SerializedString("longitude");
+    private static final SerializedString RSVP_COUNT = new SerializedString("rsvpCount");
+    private static final SerializedString VERSION = new SerializedString("version");
+    private static final SerializedString COMMUNITY = new SerializedString("community");
+
+    public EventSerializer() {
+        super(Event.class);
+    }
+
+    @Override
+    public void serialize(Event event, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        gen.writeNumber(event.getId());
+        JsonCodec.writeString(gen, TITLE, event.getTitle());
+        JsonCodec.writeString(gen, DESCRIPTION, event.getDescription());
+        JsonCodec.writeString(gen, DATE, event.getDate());
+        JsonCodec.writeString(gen, TIME, event.getTime());
+        JsonCodec.writeString(gen, LOCATION, event.getLocation());
+        JsonCodec.writeString(gen, CATEGORY, event.getCategory());
+        JsonCodec.writeString(gen, ORGANIZER, event.getOrganizer());
+        gen.writeFieldName(CREATOR_ID);
+        gen.writeNumber(event.getCreatorId());
+        JsonCodec.writeNumber(gen, LATITUDE, event.getLatitude());
+        JsonCodec.writeNumber(gen, LONGITUDE, event.getLongitude());
+        gen.writeFieldName(RSVP_COUNT);
+        gen.writeNumber(event.getRsvpCount());
+        gen.writeFieldName(VERSION);
+        gen.writeNumber(event.getVersion());
+        JsonCodec.writeString(gen, COMMUNITY, event.getCommunity());
+        gen.writeEndObject();
+    }
+}
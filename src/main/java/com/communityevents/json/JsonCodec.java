@@ -0,0 +1,86 @@
+package com.communityevents.json;
+
+import com.communityevents.model.Comment;
+import com.communityevents.model.Event;
+import com.communityevents.model.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The one ObjectMapper used for parsing requests and writing responses, with
+ * hand-written serializers for the model classes.
+ */
+public class JsonCodec {
+    private static final byte[] EVENT_LIST_SUFFIX = {']', '}'};
+
+    private static JsonCodec instance;
+    private final ObjectMapper mapper;
+
+    private JsonCodec() {
+        SimpleModule module = new SimpleModule("community-events-models");
+        module.addSerializer(Event.class, new EventSerializer());
+        module.addSerializer(Comment.class, new CommentSerializer());
+        module.addSerializer(User.class, new UserSerializer());
+        this.mapper = new ObjectMapper();
+        this.mapper.registerModule(module);
+    }
+
+    public static synchronized JsonCodec getInstance() {
+        if (instance == null) {
+            instance = new JsonCodec();
+        }
+        return instance;
+    }
+
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    // Builds {"count": n, "events": [...]} by splicing together each event's cached JSON
+    public byte[] encodeEventList(List<Event> events) {
+        EventJsonCache cache = EventJsonCache.getInstance();
+        byte[][] fragments = new byte[events.size()][];
+        byte[] prefix = ("{\"count\":" + events.size() + ",\"events\":[").getBytes(StandardCharsets.UTF_8);
+        int length = prefix.length + Math.max(0, events.size() - 1) + EVENT_LIST_SUFFIX.length;
+        for (int i = 0; i < fragments.length; i++) {
+            fragments[i] = cache.get(events.get(i));
+            length += fragments[i].length;
+        }
+
+        byte[] body = new byte[length];
+        System.arraycopy(prefix, 0, body, 0, prefix.length);
+        int position = prefix.length;
+        for (int i = 0; i < fragments.length; i++) {
+            if (i > 0) {
+                body[position++] = ',';
+            }
+            System.arraycopy(fragments[i], 0, body, position, fragments[i].length);
+            position += fragments[i].length;
+        }
+        System.arraycopy(EVENT_LIST_SUFFIX, 0, body, position, EVENT_LIST_SUFFIX.length);
+        return body;
+    }
+
+    static void writeString(JsonGenerator gen, SerializableString name, String value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(value);
+        }
+    }
+
+    static void writeNumber(JsonGenerator gen, SerializableString name, Double value) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+}
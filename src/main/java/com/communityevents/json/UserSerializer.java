@@ -0,0 +1,35 @@
+package com.communityevents.json;
+
+import com.communityevents.model.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+
+// Writes User without reflection. The password is never written.
+public class UserSerializer extends StdSerializer<User> {
+    private static final long serialVersionUID = 1L;
+    private static final SerializedString USER_ID = new SerializedString("userId");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString IS_LOGGED_IN = new SerializedString("isLoggedIn");
+    private static final SerializedString COMMUNITY = new SerializedString("community");
+
+    public UserSerializer() {
+        super(User.class);
+    }
+
+    @Override
+    public void serialize(User user, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(USER_ID);
+        gen.writeNumber(user.getUserId());
+        JsonCodec.writeString(gen, NAME, user.getName());
+        JsonCodec.writeString(gen, EMAIL, user.getEmail());
+        gen.writeFieldName(IS_LOGGED_IN);
+        gen.writeBoolean(user.isLoggedIn());
+        JsonCodec.writeString(gen, COMMUNITY, user.getCommunity());
+        gen.writeEndObject();
+    }
+}
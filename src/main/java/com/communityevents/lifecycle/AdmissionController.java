@@ -0,0 +1,211 @@
+package com.communityevents.lifecycle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets at most ADMISSION_CONCURRENCY API requests work at once, so that
+ * they do not all pile onto the connection pool, and decides who goes next
+ * by priority class rather than by who gets a connection first.
+ *
+ * Each class has its own concurrency limit, so bulk work (listings, search,
+ * exports) can never take every slot, and its own FIFO queue. The queues
+ * form one priority queue: a freed slot goes to the oldest critical request
+ * (sign-ins and writes), then interactive (single events, comments,
+ * suggestions), then bulk, skipping classes at their limit. A request that
+ * waits longer than its class's queue timeout or its own deadline, or finds
+ * its queue full, is shed with a 503 instead of waiting out the pool.
+ */
+public class AdmissionController {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionController.class);
+
+    public enum Priority {
+        CRITICAL, INTERACTIVE, BULK
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private static AdmissionController instance;
+
+    private final int capacity;
+    private final int queueLimit;
+    private final int[] limits = new int[PRIORITIES.length];
+    private final long[] queueTimeoutNanos = new long[PRIORITIES.length];
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private int running;
+    private final int[] runningByClass = new int[PRIORITIES.length];
+    private final List<ArrayDeque<Waiter>> queues = new ArrayList<>(PRIORITIES.length);
+
+    private final LongAdder[] admitted = new LongAdder[PRIORITIES.length];
+    private final LongAdder[] queued = new LongAdder[PRIORITIES.length];
+    private final LongAdder[] shed = new LongAdder[PRIORITIES.length];
+
+    // A queued request; admitted is set, under the lock, by whoever hands it a slot
+    private class Waiter {
+        final Condition ready = lock.newCondition();
+        boolean admitted;
+    }
+
+    AdmissionController(int capacity, int[] limits, long[] queueTimeoutMillis, int queueLimit) {
+        this.capacity = capacity;
+        this.queueLimit = queueLimit;
+        for (Priority priority : PRIORITIES) {
+            int i = priority.ordinal();
+            this.limits[i] = Math.min(capacity, limits[i]);
+            this.queueTimeoutNanos[i] = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis[i]);
+            this.queues.add(new ArrayDeque<>());
+            this.admitted[i] = new LongAdder();
+            this.queued[i] = new LongAdder();
+            this.shed[i] = new LongAdder();
+        }
+    }
+
+    public static synchronized AdmissionController getInstance() {
+        if (instance == null) {
+            instance = fromEnvironment();
+        }
+        return instance;
+    }
+
+    // Defaults leave bulk work at most 4 of the 10 slots and always keep 2 for critical requests
+    private static AdmissionController fromEnvironment() {
+        int capacity = intFromEnvironment("ADMISSION_CONCURRENCY", 10);
+        int[] limits = {
+                intFromEnvironment("ADMISSION_CRITICAL_LIMIT", capacity),
+                intFromEnvironment("ADMISSION_INTERACTIVE_LIMIT", 8),
+                intFromEnvironment("ADMISSION_BULK_LIMIT", 4)};
+        long[] queueTimeouts = {
+                intFromEnvironment("ADMISSION_CRITICAL_QUEUE_MS", 5000),
+                intFromEnvironment("ADMISSION_INTERACTIVE_QUEUE_MS", 1000),
+                intFromEnvironment("ADMISSION_BULK_QUEUE_MS", 500)};
+        return new AdmissionController(capacity, limits, queueTimeouts,
+                intFromEnvironment("ADMISSION_QUEUE_LIMIT", 100));
+    }
+
+    private static int intFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Waits for a slot for a request of the given class, at most the class's
+     * queue timeout and never past the thread's Deadline. Throws
+     * ServiceUnavailableException when the request is shed. Every successful
+     * admit must be paired with a release.
+     */
+    public void admit(Priority priority) {
+        int i = priority.ordinal();
+        long maxWaitNanos = Math.min(queueTimeoutNanos[i], Math.max(0, Deadline.remainingNanos()));
+        lock.lock();
+        try {
+            // Requests already queued in this class or a more urgent one go first
+            if (canRun(i) && !hasWaitersUpTo(i)) {
+                start(i);
+                return;
+            }
+            if (queues.get(i).size() >= queueLimit) {
+                shed[i].increment();
+                throw new ServiceUnavailableException("Server is busy", 1);
+            }
+            Waiter waiter = new Waiter();
+            queues.get(i).addLast(waiter);
+            queued[i].increment();
+            long remaining = maxWaitNanos;
+            try {
+                while (!waiter.admitted && remaining > 0) {
+                    remaining = waiter.ready.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!waiter.admitted) {
+                queues.get(i).remove(waiter);
+                shed[i].increment();
+                throw new ServiceUnavailableException("Server is busy", 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Frees the request's slot and hands it, or any other freed capacity, to the next in line
+    public void release(Priority priority) {
+        lock.lock();
+        try {
+            running--;
+            runningByClass[priority.ordinal()]--;
+            for (int i = 0; i < PRIORITIES.length && running < capacity; i++) {
+                while (!queues.get(i).isEmpty() && canRun(i)) {
+                    Waiter waiter = queues.get(i).pollFirst();
+                    start(i);
+                    waiter.admitted = true;
+                    waiter.ready.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canRun(int i) {
+        return running < capacity && runningByClass[i] < limits[i];
+    }
+
+    private boolean hasWaitersUpTo(int i) {
+        for (int j = 0; j <= i; j++) {
+            if (!queues.get(j).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void start(int i) {
+        running++;
+        runningByClass[i]++;
+        admitted[i].increment();
+    }
+
+    // Slots in use and queue depth per class, with admitted, queued and shed totals since startup
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("capacity", capacity);
+            stats.put("running", running);
+            for (Priority priority : PRIORITIES) {
+                int i = priority.ordinal();
+                Map<String, Object> byClass = new LinkedHashMap<>();
+                byClass.put("limit", limits[i]);
+                byClass.put("running", runningByClass[i]);
+                byClass.put("queueDepth", queues.get(i).size());
+                byClass.put("queueTimeoutMs", TimeUnit.NANOSECONDS.toMillis(queueTimeoutNanos[i]));
+                byClass.put("admitted", admitted[i].sum());
+                byClass.put("queued", queued[i].sum());
+                byClass.put("shed", shed[i].sum());
+                stats.put(priority.name().toLowerCase(), byClass);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,59 @@
+package com.communityevents.lifecycle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time budget of the request being handled on the current thread.
+ *
+ * Main starts a deadline for each API request from its route's budget and
+ * clears it when the request finishes. Database work reads it to bound how
+ * long it waits for a connection, sets its statements' query timeouts from it
+ * and cancels statements still running when it expires. Threads without a
+ * deadline (background jobs, exports) are not limited.
+ */
+public final class Deadline {
+    private static final ThreadLocal<Long> expiresAtNanos = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    // Starts a deadline budgetMillis from now on this thread; 0 or less means none
+    public static void start(long budgetMillis) {
+        if (budgetMillis <= 0) {
+            expiresAtNanos.remove();
+        } else {
+            expiresAtNanos.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+        }
+    }
+
+    public static void clear() {
+        expiresAtNanos.remove();
+    }
+
+    public static boolean isSet() {
+        return expiresAtNanos.get() != null;
+    }
+
+    // Nanoseconds left, Long.MAX_VALUE without a deadline and 0 or less once expired
+    public static long remainingNanos() {
+        Long expiresAt = expiresAtNanos.get();
+        return expiresAt == null ? Long.MAX_VALUE : expiresAt - System.nanoTime();
+    }
+
+    // Milliseconds left, Long.MAX_VALUE without a deadline and 0 once expired
+    public static long remainingMillis() {
+        long remaining = remainingNanos();
+        return remaining == Long.MAX_VALUE ? remaining : Math.max(0, TimeUnit.NANOSECONDS.toMillis(remaining));
+    }
+
+    public static boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    // Throws DeadlineExceededException when the budget is used up
+    public static void check() {
+        if (isExpired()) {
+            throw new DeadlineExceededException();
+        }
+    }
+}
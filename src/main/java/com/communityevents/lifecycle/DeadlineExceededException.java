@@ -0,0 +1,10 @@
+package com.communityevents.lifecycle;
+
+// The request ran out of its time budget; its remaining work is abandoned and the client gets a 503
+public class DeadlineExceededException extends ServiceUnavailableException {
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException() {
+        super("Request took too long", 1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.communityevents.lifecycle;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerLifecycle {
+    private static ServerLifecycle instance;
+    private volatile boolean warmedUp = false;
+    private volatile boolean ready = false;
+    private volatile boolean draining = false;
+    // Striped so request threads don't contend on a single counter
+    private final LongAdder inFlightRequests = new LongAdder();
+
+    private ServerLifecycle() {
+    }
+
+    public static synchronized ServerLifecycle getInstance() {
+        if (instance == null) {
+            instance = new ServerLifecycle();
+        }
+        return instance;
+    }
+
+    // Ready once warm-up has finished; load balancers should only route traffic to ready instances
+    public boolean isReady() {
+        return ready && !draining;
+    }
+
+    public void markReady() {
+        warmedUp = true;
+        ready = true;
+    }
+
+    // Only changes what /health/ready reports: requests keep being served until draining starts
+    public void markNotReady() {
+        ready = false;
+    }
+
+    // Set by the first markReady and never cleared; gates API traffic during startup
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    // Once draining, new requests are turned away while in-flight ones finish
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public void startDraining() {
+        draining = true;
+    }
+
+    public void requestStarted() {
+        inFlightRequests.increment();
+    }
+
+    public void requestFinished() {
+        inFlightRequests.decrement();
+    }
+
+    public long getInFlightRequests() {
+        return inFlightRequests.sum();
+    }
+
+    // Waits until no requests are in flight or the deadline (System.nanoTime) passes
+    public boolean awaitInFlight(long deadlineNanos) throws InterruptedException {
+        while (inFlightRequests.sum() > 0) {
+            if (System.nanoTime() >= deadlineNanos) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+package com.communityevents.lifecycle;
+
+import com.communityevents.audit.AuditLog;
+import com.communityevents.database.Database;
+import com.communityevents.database.DatabaseConnectionManager;
+import com.communityevents.logging.Logging;
+import io.javalin.Javalin;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shuts the server down without cutting off requests:
+ * 1. report not ready and keep serving for SHUTDOWN_DRAIN_DELAY_MS so load
+ *    balancers stop sending new traffic,
+ * 2. turn away new requests and wait for in-flight ones,
+ * 3. flush the audit log and background writers,
+ * 4. stop Jetty and close the connection pools.
+ * Everything after step 1 shares one SHUTDOWN_TIMEOUT_MS deadline.
+ */
+public class ShutdownCoordinator {
+    private static final Logger log = LoggerFactory.getLogger(ShutdownCoordinator.class);
+
+    private final Javalin app;
+    private final ServerLifecycle lifecycle;
+    private final long drainDelayMillis;
+    private final long timeoutMillis;
+
+    public ShutdownCoordinator(Javalin app) {
+        this.app = app;
+        this.lifecycle = ServerLifecycle.getInstance();
+        this.drainDelayMillis = readMillis("SHUTDOWN_DRAIN_DELAY_MS", 2000);
+        this.timeoutMillis = readMillis("SHUTDOWN_TIMEOUT_MS", 20000);
+    }
+
+    private static long readMillis(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {}: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    public void register() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "shutdown-coordinator"));
+    }
+
+    public void shutdown() {
+        long start = System.nanoTime();
+        // Requests are still served while the load balancer notices the failing readiness check
+        log.info("Shutting down: no longer ready, draining for {} ms", drainDelayMillis);
+        lifecycle.markNotReady();
+        try {
+            Thread.sleep(drainDelayMillis);
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            lifecycle.startDraining();
+            if (!lifecycle.awaitInFlight(deadline)) {
+                log.warn("Shutdown deadline reached with {} requests still in flight", lifecycle.getInFlightRequests());
+            }
+
+            // Audit records may go to the database, so they are flushed before it closes
+            AuditLog.getInstance().shutdown(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            long remainingMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            Database.getInstance().shutdown(remainingMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            app.stop();
+            DatabaseConnectionManager.getInstance().close();
+            log.info("Shutdown complete in {} ms", (System.nanoTime() - start) / 1_000_000);
+            // Last, so everything above reaches the log
+            Logging.shutdown();
+        }
+    }
+}
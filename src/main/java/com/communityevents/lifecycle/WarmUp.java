@@ -0,0 +1,126 @@
+package com.communityevents.lifecycle;
+
+import com.communityevents.controller.Controller;
+import com.communityevents.database.Database;
+import com.communityevents.database.DatabaseConnectionManager;
+import com.communityevents.model.Event;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warms the server up before it reports ready: fills the connection pools,
+ * primes JSON (de)serialization of the models and drives synthetic requests
+ * through the handlers so the hot paths are JIT-compiled and the JDBC driver
+ * has server-side prepared statements for the common queries.
+ */
+public class WarmUp {
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+    // Requests carrying this header with the process's token are let through while the server is not ready yet
+    public static final String HEADER = "X-Warmup";
+    // Generated at startup and only known to this process, so clients cannot pass off requests as warm-up
+    private static final String TOKEN = newToken();
+
+    private final int port;
+    private final int iterations;
+
+    public WarmUp(int port) {
+        this.port = port;
+        this.iterations = readIterations();
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // Whether a request's HEADER value marks it as one of our synthetic warm-up requests
+    public static boolean isWarmUpRequest(String headerValue) {
+        return headerValue != null && MessageDigest.isEqual(
+                headerValue.getBytes(StandardCharsets.UTF_8), TOKEN.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int readIterations() {
+        String value = System.getenv("WARMUP_ITERATIONS");
+        if (value == null || value.isEmpty()) {
+            return 20;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid WARMUP_ITERATIONS: {}", value);
+            return 20;
+        }
+    }
+
+    public void run() {
+        long start = System.nanoTime();
+        DatabaseConnectionManager.getInstance().prefill();
+        log.info("Warm-up: connection pools filled in {} ms", elapsedMillis(start));
+
+        long phaseStart = System.nanoTime();
+        Controller.getInstance().primeSerializers();
+        log.info("Warm-up: serializers primed in {} ms", elapsedMillis(phaseStart));
+
+        phaseStart = System.nanoTime();
+        int failures = sendSyntheticRequests();
+        log.info("Warm-up: {} rounds of synthetic requests in {} ms{}", iterations, elapsedMillis(phaseStart),
+                failures > 0 ? " (" + failures + " failed)" : "");
+
+        log.info("Warm-up finished in {} ms", elapsedMillis(start));
+    }
+
+    private int sendSyntheticRequests() {
+        List<String> paths = new ArrayList<>();
+        paths.add("/api/events");
+        paths.add("/api/events/search?keyword=warmup");
+        paths.add("/api/events/search?category=community");
+        paths.add("/api/auth/status");
+        List<Event> events = Database.getInstance().getEvents();
+        if (!events.isEmpty()) {
+            int eventId = events.get(0).getId();
+            paths.add("/api/events/" + eventId);
+            paths.add("/api/events/" + eventId + "/comments");
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        int failures = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (String path : paths) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                        .header(HEADER, TOKEN)
+                        .timeout(Duration.ofSeconds(10))
+                        .GET()
+                        .build();
+                try {
+                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    if (response.statusCode() >= 500) {
+                        failures++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return failures;
+                } catch (Exception e) {
+                    failures++;
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,107 @@
+package com.communityevents.logging;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs caught exceptions without letting an outage turn into a logging storm.
+ *
+ * Every error is counted by type (the exception class, plus the SQLState for
+ * SQL errors). Logging itself is limited per call site: the first
+ * ERROR_TRACE_BURST errors of a site in each ERROR_TRACE_INTERVAL_MS window
+ * are logged with their stack trace, after that only one in ERROR_LOG_SAMPLE
+ * is, carrying the number suppressed since the last one logged. The counters
+ * still see everything; see GET /health/errors.
+ */
+public class ErrorReporter {
+    private static final int TRACE_BURST = intFromEnvironment("ERROR_TRACE_BURST", 5);
+    private static final long TRACE_INTERVAL_MILLIS = intFromEnvironment("ERROR_TRACE_INTERVAL_MS", 60000);
+    private static final int SAMPLE_RATE = intFromEnvironment("ERROR_LOG_SAMPLE", 100);
+
+    private static final Map<String, LongAdder> countsByType = new ConcurrentHashMap<>();
+    private static final Map<String, Site> sites = new ConcurrentHashMap<>();
+    private static final LongAdder suppressedTotal = new LongAdder();
+
+    // Rate limit state of one (logger, message, error type) combination
+    private static class Site {
+        final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+        final AtomicInteger inWindow = new AtomicInteger();
+        final AtomicLong suppressed = new AtomicLong();
+
+        boolean admit(long now) {
+            long start = windowStart.get();
+            if (now - start >= TRACE_INTERVAL_MILLIS && windowStart.compareAndSet(start, now)) {
+                inWindow.set(0);
+            }
+            int seen = inWindow.incrementAndGet();
+            return seen <= TRACE_BURST || (seen - TRACE_BURST) % SAMPLE_RATE == 0;
+        }
+    }
+
+    private final Logger logger;
+
+    private ErrorReporter(Logger logger) {
+        this.logger = logger;
+    }
+
+    public static ErrorReporter forClass(Class<?> type) {
+        return new ErrorReporter(LoggerFactory.getLogger(type));
+    }
+
+    private static int intFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            LoggerFactory.getLogger(ErrorReporter.class).warn("Ignoring invalid {}: {}", name, value);
+            return defaultValue;
+        }
+    }
+
+    // Counts the error and logs "message: error message" with its stack trace, unless rate-limited
+    public void report(String message, Throwable error) {
+        String type = typeOf(error);
+        countsByType.computeIfAbsent(type, key -> new LongAdder()).increment();
+
+        Site site = sites.computeIfAbsent(logger.getName() + '|' + message + '|' + type, key -> new Site());
+        if (!site.admit(System.currentTimeMillis())) {
+            site.suppressed.incrementAndGet();
+            suppressedTotal.increment();
+            return;
+        }
+        long suppressed = site.suppressed.getAndSet(0);
+        if (suppressed > 0) {
+            logger.error("{}: {} ({} similar errors not logged)", message, error.getMessage(), suppressed, error);
+        } else {
+            logger.error("{}: {}", message, error.getMessage(), error);
+        }
+    }
+
+    // Errors seen per type since startup
+    public static Map<String, Object> getCounts() {
+        Map<String, Long> byType = new TreeMap<>();
+        countsByType.forEach((type, count) -> byType.put(type, count.sum()));
+        Map<String, Object> counts = new TreeMap<>();
+        counts.put("errors", byType);
+        counts.put("suppressed", suppressedTotal.sum());
+        return counts;
+    }
+
+    private static String typeOf(Throwable error) {
+        String type = error.getClass().getSimpleName();
+        if (error instanceof SQLException && ((SQLException) error).getSQLState() != null) {
+            type += "(" + ((SQLException) error).getSQLState() + ")";
+        }
+        return type;
+    }
+}
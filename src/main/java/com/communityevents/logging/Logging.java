@@ -0,0 +1,18 @@
+package com.communityevents.logging;
+
+import ch.qos.logback.classic.LoggerContext;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+
+public class Logging {
+    private Logging() {
+    }
+
+    // Writes out the events still queued in the asynchronous appender; call last before exiting
+    public static void shutdown() {
+        ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+        if (factory instanceof LoggerContext) {
+            ((LoggerContext) factory).stop();
+        }
+    }
+}
@@ -23,6 +23,9 @@ public class Comment {
     @JsonProperty("userName")
     private String userName; // For display purposes
 
+    @JsonProperty("community")
+    private String community; // Set from the shard the comment is stored in
+
     public Comment() {
     }
 
@@ -83,5 +86,13 @@ public class Comment {
     public void setUserName(String userName) {
         this.userName = userName;
     }
+
+    public String getCommunity() {
+        return community;
+    }
+
+    public void setCommunity(String community) {
+        this.community = community;
+    }
 }
 
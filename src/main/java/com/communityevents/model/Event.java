@@ -30,6 +30,21 @@ public class Event {
     @JsonProperty("creatorId")
     private int creatorId;
 
+    @JsonProperty("latitude")
+    private Double latitude; // Optional, WGS84 degrees
+
+    @JsonProperty("longitude")
+    private Double longitude; // Optional, WGS84 degrees
+
+    @JsonProperty("rsvpCount")
+    private int rsvpCount;
+
+    @JsonProperty("version")
+    private int version; // Bumped by every edit, for If-Match
+
+    @JsonProperty("community")
+    private String community; // Set from the shard the event is stored in
+
     public Event() {
     }
 
@@ -118,5 +133,44 @@ public class Event {
     public void setCreatorId(int creatorId) {
         this.creatorId = creatorId;
     }
-}
 
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    public int getRsvpCount() {
+        return rsvpCount;
+    }
+
+    public void setRsvpCount(int rsvpCount) {
+        this.rsvpCount = rsvpCount;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public String getCommunity() {
+        return community;
+    }
+
+    public void setCommunity(String community) {
+        this.community = community;
+    }
+}
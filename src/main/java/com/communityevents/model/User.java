@@ -18,6 +18,9 @@ public class User {
     // Password should NOT be serialized to JSON for security
     private String password; // For authentication purposes
 
+    @JsonProperty("community")
+    private String community; // Users belong to one community; set from the shard they are stored in
+
     public User() {
     }
 
@@ -70,6 +73,14 @@ public class User {
         this.password = password;
     }
 
+    public String getCommunity() {
+        return community;
+    }
+
+    public void setCommunity(String community) {
+        this.community = community;
+    }
+
     // Methods from class diagram
     public void viewEvents() {
         // This will be handled by the controller
@@ -0,0 +1,15 @@
+package com.communityevents.search;
+
+import com.communityevents.model.Event;
+import java.util.Collection;
+
+// An in-memory index over events, kept in sync with Database writes
+public interface EventIndex {
+    // Replaces the whole index content, e.g. at startup
+    void rebuild(Collection<Event> events);
+
+    // Adds the event, or replaces what was indexed for the same id
+    void put(Event event);
+
+    void remove(int eventId);
+}
@@ -0,0 +1,53 @@
+package com.communityevents.search;
+
+import com.communityevents.model.Event;
+import java.util.Collection;
+import java.util.List;
+
+// All in-memory event indexes, updated together
+public class EventIndexes {
+    private final GeoIndex geoIndex = new GeoIndex();
+    private final SuggestionIndex suggestionIndex = new SuggestionIndex();
+    private final TrigramIndex trigramIndex = new TrigramIndex();
+    private final FacetIndex facetIndex = new FacetIndex();
+    private final TimeIndex timeIndex = new TimeIndex();
+    private final List<EventIndex> indexes = List.of(geoIndex, suggestionIndex, trigramIndex, facetIndex, timeIndex);
+
+    public void rebuild(Collection<Event> events) {
+        for (EventIndex index : indexes) {
+            index.rebuild(events);
+        }
+    }
+
+    public void put(Event event) {
+        for (EventIndex index : indexes) {
+            index.put(event);
+        }
+    }
+
+    public void remove(int eventId) {
+        for (EventIndex index : indexes) {
+            index.remove(eventId);
+        }
+    }
+
+    public GeoIndex geo() {
+        return geoIndex;
+    }
+
+    public SuggestionIndex suggestions() {
+        return suggestionIndex;
+    }
+
+    public TrigramIndex trigrams() {
+        return trigramIndex;
+    }
+
+    public FacetIndex facets() {
+        return facetIndex;
+    }
+
+    public TimeIndex times() {
+        return timeIndex;
+    }
+}
@@ -0,0 +1,25 @@
+package com.communityevents.search;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// One facet value and the number of events that have it, e.g. "Fitness" (42)
+public class FacetCount {
+    @JsonProperty("value")
+    private final String value;
+
+    @JsonProperty("count")
+    private final int count;
+
+    public FacetCount(String value, int count) {
+        this.value = value;
+        this.count = count;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
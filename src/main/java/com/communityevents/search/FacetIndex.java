@@ -0,0 +1,180 @@
+package com.communityevents.search;
+
+import com.communityevents.model.Event;
+import java.util.*;
+
+/**
+ * Event counts per category, per month ("2024-06") and per location.
+ *
+ * Counters are adjusted on every write, and the sorted result is cached until
+ * the next write, so serving facets costs O(facets) however many events there
+ * are. replaceCounts() lets a GROUP BY over the table correct counters that
+ * drifted, e.g. because another node wrote events.
+ */
+public class FacetIndex implements EventIndex {
+    public static final String CATEGORY = "category";
+    public static final String MONTH = "month";
+    public static final String LOCATION = "location";
+    public static final List<String> FACETS = List.of(CATEGORY, MONTH, LOCATION);
+
+    private final Map<String, Map<String, Integer>> counts = new HashMap<>();
+    // The facet values each indexed event was counted under, to undo on update/delete
+    private final Map<Integer, String[]> eventValues = new HashMap<>();
+    private long generation;
+    private int total;
+    private Map<String, List<FacetCount>> snapshot;
+
+    public FacetIndex() {
+        clearCounts();
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<Event> events) {
+        clearCounts();
+        eventValues.clear();
+        for (Event event : events) {
+            add(event);
+        }
+        changed();
+    }
+
+    @Override
+    public synchronized void put(Event event) {
+        removeEvent(event.getId());
+        add(event);
+        changed();
+    }
+
+    @Override
+    public synchronized void remove(int eventId) {
+        removeEvent(eventId);
+        changed();
+    }
+
+    // Sorted counts per facet, largest first; shared and unmodifiable
+    public synchronized Map<String, List<FacetCount>> getFacets() {
+        if (snapshot == null) {
+            Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+            for (String facet : FACETS) {
+                facets.put(facet, sorted(counts.get(facet)));
+            }
+            snapshot = Collections.unmodifiableMap(facets);
+        }
+        return snapshot;
+    }
+
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    // Incremented by every write; lets a refresh detect writes that raced with it
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Replaces the counters with ones computed by the database. Ignored when a
+     * write happened since the given generation was read, as the query result
+     * may not include it; the next refresh will apply.
+     */
+    public synchronized boolean replaceCounts(Map<String, Map<String, Integer>> fresh, int freshTotal,
+                                              long sinceGeneration) {
+        if (generation != sinceGeneration) {
+            return false;
+        }
+        clearCounts();
+        for (String facet : FACETS) {
+            Map<String, Integer> values = fresh.get(facet);
+            if (values != null) {
+                counts.get(facet).putAll(values);
+            }
+        }
+        total = freshTotal;
+        changed();
+        return true;
+    }
+
+    // Facet values of a list of events, e.g. search results; O(events)
+    public static Map<String, List<FacetCount>> countFacets(Collection<Event> events) {
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+        for (String facet : FACETS) {
+            counts.put(facet, new HashMap<>());
+        }
+        for (Event event : events) {
+            String[] values = valuesOf(event);
+            for (int i = 0; i < FACETS.size(); i++) {
+                if (values[i] != null) {
+                    counts.get(FACETS.get(i)).merge(values[i], 1, Integer::sum);
+                }
+            }
+        }
+        Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+        for (String facet : FACETS) {
+            facets.put(facet, sorted(counts.get(facet)));
+        }
+        return facets;
+    }
+
+    // Month bucket of an event date, matching LEFT(date, 7) in SQL
+    public static String monthOf(String date) {
+        if (date == null || date.trim().isEmpty()) {
+            return null;
+        }
+        return date.length() > 7 ? date.substring(0, 7) : date;
+    }
+
+    private void add(Event event) {
+        String[] values = valuesOf(event);
+        eventValues.put(event.getId(), values);
+        for (int i = 0; i < FACETS.size(); i++) {
+            if (values[i] != null) {
+                counts.get(FACETS.get(i)).merge(values[i], 1, Integer::sum);
+            }
+        }
+        total++;
+    }
+
+    private void removeEvent(int eventId) {
+        String[] values = eventValues.remove(eventId);
+        if (values == null) {
+            return;
+        }
+        for (int i = 0; i < FACETS.size(); i++) {
+            if (values[i] != null) {
+                // Drop values that reach zero so they disappear from the facet list
+                counts.get(FACETS.get(i)).computeIfPresent(values[i], (value, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+        total = Math.max(0, total - 1);
+    }
+
+    private void changed() {
+        generation++;
+        snapshot = null;
+    }
+
+    private void clearCounts() {
+        for (String facet : FACETS) {
+            counts.put(facet, new HashMap<>());
+        }
+        total = 0;
+    }
+
+    private static String[] valuesOf(Event event) {
+        return new String[] {blankToNull(event.getCategory()), monthOf(event.getDate()), blankToNull(event.getLocation())};
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+
+    private static List<FacetCount> sorted(Map<String, Integer> values) {
+        List<FacetCount> facetCounts = new ArrayList<>(values.size());
+        for (Map.Entry<String, Integer> value : values.entrySet()) {
+            facetCounts.add(new FacetCount(value.getKey(), value.getValue()));
+        }
+        facetCounts.sort(Comparator.comparingInt((FacetCount count) -> -count.getCount())
+                .thenComparing(FacetCount::getValue));
+        return Collections.unmodifiableList(facetCounts);
+    }
+}
@@ -0,0 +1,163 @@
+package com.communityevents.search;
+
+import com.communityevents.model.Event;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grid index over event coordinates. The globe is split into fixed cells of
+ * CELL_DEGREES; a radius query only looks at events in the cells overlapping
+ * the query's bounding box and returns them ordered by great-circle distance.
+ */
+public class GeoIndex implements EventIndex {
+    private static final double CELL_DEGREES = 0.1;
+    private static final int COLUMNS = (int) Math.round(360 / CELL_DEGREES);
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    // Shortest length of one degree of latitude, so bounding boxes err on the large side
+    private static final double MIN_KM_PER_DEGREE = 110.574;
+
+    private final Map<Integer, double[]> points = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Integer>> cells = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized void rebuild(Collection<Event> events) {
+        points.clear();
+        cells.clear();
+        for (Event event : events) {
+            put(event);
+        }
+    }
+
+    @Override
+    public synchronized void put(Event event) {
+        remove(event.getId());
+        if (!isValid(event.getLatitude(), event.getLongitude())) {
+            return;
+        }
+        double[] point = {event.getLatitude(), event.getLongitude()};
+        points.put(event.getId(), point);
+        cells.computeIfAbsent(cellOf(point[0], point[1]), key -> ConcurrentHashMap.newKeySet()).add(event.getId());
+    }
+
+    @Override
+    public synchronized void remove(int eventId) {
+        double[] point = points.remove(eventId);
+        if (point == null) {
+            return;
+        }
+        long cell = cellOf(point[0], point[1]);
+        Set<Integer> ids = cells.get(cell);
+        if (ids != null) {
+            ids.remove(eventId);
+            if (ids.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+    }
+
+    /**
+     * Ids of the events within radiusKm of the point, nearest first, mapped to
+     * their distance in km.
+     */
+    public LinkedHashMap<Integer, Double> findWithin(double latitude, double longitude, double radiusKm) {
+        double latSpan = radiusKm / MIN_KM_PER_DEGREE;
+        double minLat = Math.max(-90, latitude - latSpan);
+        double maxLat = Math.min(90, latitude + latSpan);
+        double widestCos = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        double lonSpan = widestCos < 1e-6 ? 180 : radiusKm / (MIN_KM_PER_DEGREE * widestCos);
+
+        int firstRow = row(minLat);
+        int lastRow = row(maxLat);
+        int firstColumn = (int) Math.floor((longitude - lonSpan + 180) / CELL_DEGREES);
+        int lastColumn = (int) Math.floor((longitude + lonSpan + 180) / CELL_DEGREES);
+        if (lastColumn - firstColumn + 1 >= COLUMNS) {
+            firstColumn = 0;
+            lastColumn = COLUMNS - 1;
+        }
+
+        List<Map.Entry<Integer, Double>> matches = new ArrayList<>();
+        long cellCount = (long) (lastRow - firstRow + 1) * (lastColumn - firstColumn + 1);
+        if (cellCount > points.size()) {
+            // Very large radius: checking every point is cheaper than visiting the cells
+            for (Map.Entry<Integer, double[]> point : points.entrySet()) {
+                addIfWithin(matches, point.getKey(), point.getValue(), latitude, longitude, radiusKm);
+            }
+        } else {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    Set<Integer> ids = cells.get(cellKey(row, Math.floorMod(column, COLUMNS)));
+                    if (ids == null) {
+                        continue;
+                    }
+                    for (Integer id : ids) {
+                        double[] point = points.get(id);
+                        if (point != null) {
+                            addIfWithin(matches, id, point, latitude, longitude, radiusKm);
+                        }
+                    }
+                }
+            }
+        }
+
+        matches.sort(Map.Entry.comparingByValue());
+        LinkedHashMap<Integer, Double> nearest = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Double> match : matches) {
+            nearest.put(match.getKey(), match.getValue());
+        }
+        return nearest;
+    }
+
+    private static void addIfWithin(List<Map.Entry<Integer, Double>> matches, int id, double[] point,
+                                    double latitude, double longitude, double radiusKm) {
+        double distance = distanceKm(latitude, longitude, point[0], point[1]);
+        if (distance <= radiusKm) {
+            matches.add(new AbstractMap.SimpleImmutableEntry<>(id, distance));
+        }
+    }
+
+    // Haversine great-circle distance
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public static boolean isValid(Double latitude, Double longitude) {
+        return latitude != null && longitude != null
+                && latitude >= -90 && latitude <= 90
+                && longitude >= -180 && longitude <= 180;
+    }
+
+    // Parses "lat,lon"; returns null when malformed or out of range
+    public static double[] parsePoint(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            double latitude = Double.parseDouble(parts[0].trim());
+            double longitude = Double.parseDouble(parts[1].trim());
+            return isValid(latitude, longitude) ? new double[] {latitude, longitude} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor((latitude + 90) / CELL_DEGREES);
+    }
+
+    private static long cellOf(double latitude, double longitude) {
+        int column = Math.floorMod((int) Math.floor((longitude + 180) / CELL_DEGREES), COLUMNS);
+        return cellKey(row(latitude), column);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | column;
+    }
+}
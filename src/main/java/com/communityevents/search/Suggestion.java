@@ -0,0 +1,33 @@
+package com.communityevents.search;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// One typeahead completion: the text, which field it came from and how many events use it
+public class Suggestion {
+    @JsonProperty("text")
+    private final String text;
+
+    @JsonProperty("type")
+    private final String type;
+
+    @JsonProperty("count")
+    private final int count;
+
+    public Suggestion(String text, String type, int count) {
+        this.text = text;
+        this.type = type;
+        this.count = count;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
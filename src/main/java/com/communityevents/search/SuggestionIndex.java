@@ -0,0 +1,265 @@
+package com.communityevents.search;
+
+import com.communityevents.model.Event;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix trie over event titles, organizers, locations and categories for
+ * typeahead. Titles, organizers and locations are also reachable from the
+ * start of each of their words ("park" finds "Yoga in the Park").
+ *
+ * Every node caches its MAX_SUGGESTIONS most frequent completions. A write
+ * only clears the caches along the paths of the phrases it touched, and a
+ * query refills a cleared cache from its children's caches, so lookups stay
+ * proportional to the prefix length once warm.
+ */
+public class SuggestionIndex implements EventIndex {
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final Comparator<Completion> BY_FREQUENCY = Comparator
+            .comparingInt((Completion completion) -> -completion.count)
+            .thenComparing(completion -> completion.text);
+
+    // A distinct (type, phrase) pair and the number of events using it
+    private static class Completion {
+        final String type;
+        final String text;
+        final List<String> keys;
+        int count;
+
+        Completion(String type, String text, List<String> keys) {
+            this.type = type;
+            this.text = text;
+            this.keys = keys;
+        }
+    }
+
+    private static class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        List<Completion> terminals;
+        volatile List<Completion> top;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = new Node();
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+    private final Map<String, Completion> completions = new HashMap<>();
+    private final Map<Integer, List<Completion>> eventCompletions = new HashMap<>();
+
+    @Override
+    public void rebuild(Collection<Event> events) {
+        lock.writeLock().lock();
+        try {
+            root = new Node();
+            completions.clear();
+            eventCompletions.clear();
+            for (Event event : events) {
+                add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(Event event) {
+        lock.writeLock().lock();
+        try {
+            removeEvent(event.getId());
+            add(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int eventId) {
+        lock.writeLock().lock();
+        try {
+            removeEvent(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Most frequent completions of the prefix, at most limit (capped at MAX_SUGGESTIONS)
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            List<Suggestion> suggestions = new ArrayList<>();
+            if (node == null) {
+                return suggestions;
+            }
+            for (Completion completion : top(node)) {
+                if (suggestions.size() >= limit) {
+                    break;
+                }
+                suggestions.add(new Suggestion(completion.text, completion.type, completion.count));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Called under the read lock; concurrent fills compute the same list, so the race is benign
+    private List<Completion> top(Node node) {
+        List<Completion> cached = node.top;
+        if (cached != null) {
+            return cached;
+        }
+        Set<Completion> candidates = new LinkedHashSet<>();
+        if (node.terminals != null) {
+            candidates.addAll(node.terminals);
+        }
+        for (Node child : node.children) {
+            candidates.addAll(top(child));
+        }
+        List<Completion> ranked = new ArrayList<>(candidates);
+        ranked.sort(BY_FREQUENCY);
+        List<Completion> best = Collections.unmodifiableList(
+                new ArrayList<>(ranked.subList(0, Math.min(MAX_SUGGESTIONS, ranked.size()))));
+        node.top = best;
+        return best;
+    }
+
+    private void add(Event event) {
+        List<Completion> added = new ArrayList<>();
+        addPhrase(added, "title", event.getTitle(), true);
+        addPhrase(added, "organizer", event.getOrganizer(), true);
+        addPhrase(added, "location", event.getLocation(), true);
+        addPhrase(added, "category", event.getCategory(), false);
+        if (!added.isEmpty()) {
+            eventCompletions.put(event.getId(), added);
+        }
+    }
+
+    private void addPhrase(List<Completion> added, String type, String text, boolean byWord) {
+        String key = normalize(text);
+        if (key.isEmpty()) {
+            return;
+        }
+        String id = type + ':' + key;
+        Completion completion = completions.get(id);
+        if (completion == null) {
+            completion = new Completion(type, text.trim().replaceAll("\\s+", " "), keysFor(key, byWord));
+            completions.put(id, completion);
+            for (String path : completion.keys) {
+                Node node = insert(path);
+                if (node.terminals == null) {
+                    node.terminals = new ArrayList<>(1);
+                }
+                node.terminals.add(completion);
+            }
+        } else {
+            invalidate(completion);
+        }
+        completion.count++;
+        added.add(completion);
+    }
+
+    private void removeEvent(int eventId) {
+        List<Completion> removed = eventCompletions.remove(eventId);
+        if (removed == null) {
+            return;
+        }
+        for (Completion completion : removed) {
+            invalidate(completion);
+            if (--completion.count > 0) {
+                continue;
+            }
+            completions.remove(completion.type + ':' + normalize(completion.text));
+            for (String path : completion.keys) {
+                Node node = find(path);
+                if (node != null && node.terminals != null) {
+                    node.terminals.remove(completion);
+                }
+            }
+        }
+    }
+
+    private static List<String> keysFor(String key, boolean byWord) {
+        List<String> keys = new ArrayList<>();
+        keys.add(key);
+        if (byWord) {
+            for (int i = key.indexOf(' '); i >= 0; i = key.indexOf(' ', i + 1)) {
+                keys.add(key.substring(i + 1));
+            }
+        }
+        return keys;
+    }
+
+    private Node insert(String key) {
+        Node node = root;
+        node.top = null;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrAddChild(key.charAt(i));
+            node.top = null;
+        }
+        return node;
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    // Clears the cached completions on every path leading to this completion
+    private void invalidate(Completion completion) {
+        for (String key : completion.keys) {
+            Node node = root;
+            node.top = null;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+                if (node != null) {
+                    node.top = null;
+                }
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+}
@@ -0,0 +1,202 @@
+package com.communityevents.search;
+
+import com.communityevents.model.Event;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Event ids ordered by start time, for "today", "this weekend", "next 7 days"
+ * and top-N-upcoming queries.
+ *
+ * Start times are parsed from the VARCHAR date ("2025-05-12") and time
+ * ("10:00 AM" or "18:30") columns in EVENTS_TIME_ZONE, defaulting to the
+ * server's zone. A window lookup is a range scan of a skip list, so it costs
+ * O(log n + matches) instead of a sorted table scan. Events whose date cannot
+ * be parsed are not indexed.
+ */
+public class TimeIndex implements EventIndex {
+    private static final Logger log = LoggerFactory.getLogger(TimeIndex.class);
+
+    public static final List<String> WINDOWS = List.of("today", "weekend", "week");
+
+    private static final DateTimeFormatter TWELVE_HOUR = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("h:mm[ ]a")
+            .toFormatter(Locale.US);
+    private static final DateTimeFormatter TWENTY_FOUR_HOUR = DateTimeFormatter.ofPattern("H:mm");
+
+    // Sorted by start time, then id so that events starting together are all kept
+    private static class Entry implements Comparable<Entry> {
+        final long start;
+        final int id;
+
+        Entry(long start, int id) {
+            this.start = start;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byStart = Long.compare(start, other.start);
+            return byStart != 0 ? byStart : Integer.compare(id, other.id);
+        }
+    }
+
+    private final ConcurrentSkipListSet<Entry> byStart = new ConcurrentSkipListSet<>();
+    private final Map<Integer, Entry> byId = new ConcurrentHashMap<>();
+    private final ZoneId zone;
+    private final Clock clock;
+
+    public TimeIndex() {
+        this(zoneFromEnvironment(), Clock.systemUTC());
+    }
+
+    public TimeIndex(ZoneId zone, Clock clock) {
+        this.zone = zone;
+        this.clock = clock;
+    }
+
+    // EVENTS_TIME_ZONE, or the server's zone when unset or invalid
+    public static ZoneId zoneFromEnvironment() {
+        String zone = System.getenv("EVENTS_TIME_ZONE");
+        if (zone != null && !zone.isEmpty()) {
+            try {
+                return ZoneId.of(zone.trim());
+            } catch (DateTimeException e) {
+                log.warn("Ignoring invalid EVENTS_TIME_ZONE: {}", zone);
+            }
+        }
+        return ZoneId.systemDefault();
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<Event> events) {
+        byStart.clear();
+        byId.clear();
+        for (Event event : events) {
+            add(event);
+        }
+    }
+
+    @Override
+    public synchronized void put(Event event) {
+        removeEvent(event.getId());
+        add(event);
+    }
+
+    @Override
+    public synchronized void remove(int eventId) {
+        removeEvent(eventId);
+    }
+
+    /**
+     * Ids of the events starting in the named window, in start order, at most
+     * limit of them. Returns null for an unknown window name.
+     */
+    public List<Integer> findInWindow(String window, int limit) {
+        ZonedDateTime now = ZonedDateTime.now(clock.withZone(zone));
+        ZonedDateTime startOfToday = now.toLocalDate().atStartOfDay(zone);
+        ZonedDateTime from;
+        ZonedDateTime to;
+        switch (window) {
+            case "today":
+                from = startOfToday;
+                to = startOfToday.plusDays(1);
+                break;
+            case "weekend":
+                // The coming (or current) Saturday and Sunday
+                LocalDate saturday = now.toLocalDate().getDayOfWeek() == DayOfWeek.SUNDAY
+                        ? now.toLocalDate().minusDays(1)
+                        : now.toLocalDate().with(TemporalAdjusters.nextOrSame(DayOfWeek.SATURDAY));
+                from = saturday.atStartOfDay(zone);
+                to = saturday.plusDays(2).atStartOfDay(zone);
+                break;
+            case "week":
+                from = startOfToday;
+                to = startOfToday.plusDays(7);
+                break;
+            default:
+                return null;
+        }
+        return collect(byStart.subSet(new Entry(toMillis(from), Integer.MIN_VALUE),
+                new Entry(toMillis(to), Integer.MIN_VALUE)), limit);
+    }
+
+    // Ids of the next events starting from now, in start order
+    public List<Integer> findUpcoming(int limit) {
+        return collect(byStart.tailSet(new Entry(clock.millis(), Integer.MIN_VALUE)), limit);
+    }
+
+    private static List<Integer> collect(NavigableSet<Entry> entries, int limit) {
+        List<Integer> ids = new ArrayList<>(Math.min(limit, 64));
+        for (Entry entry : entries) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    private void add(Event event) {
+        Long start = startOf(event);
+        if (start == null) {
+            return;
+        }
+        Entry entry = new Entry(start, event.getId());
+        byId.put(event.getId(), entry);
+        byStart.add(entry);
+    }
+
+    private void removeEvent(int eventId) {
+        Entry entry = byId.remove(eventId);
+        if (entry != null) {
+            byStart.remove(entry);
+        }
+    }
+
+    // Start of the event in epoch millis; an unreadable time means the start of the day
+    private Long startOf(Event event) {
+        if (event.getDate() == null) {
+            return null;
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(event.getDate().trim());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+        LocalTime time = parseTime(event.getTime());
+        return toMillis(ZonedDateTime.of(date, time == null ? LocalTime.MIDNIGHT : time, zone));
+    }
+
+    // "10:00 AM", "10:00am" or "18:30"; null when missing or unreadable
+    public static LocalTime parseTime(String time) {
+        if (time == null || time.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = time.trim();
+        try {
+            return LocalTime.parse(trimmed, TWELVE_HOUR);
+        } catch (DateTimeParseException e) {
+            // Not "10:00 AM"; try "18:30"
+        }
+        try {
+            return LocalTime.parse(trimmed, TWENTY_FOUR_HOUR);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static long toMillis(ZonedDateTime time) {
+        return time.toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,252 @@
+package com.communityevents.search;
+
+import com.communityevents.model.Event;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram index over the words of event titles, organizers and locations for
+ * typo-tolerant search ("yogga" finds "Yoga", "farmer market" finds "Farmers
+ * Market").
+ *
+ * Each distinct word is split into padded trigrams the way pg_trgm does, and
+ * every trigram keeps a posting set of the words containing it. A query word
+ * only looks at the words sharing at least one trigram with it, and accepts
+ * those whose trigram similarity reaches MIN_SIMILARITY or that are within a
+ * small edit distance, so a lookup never scans every event.
+ */
+public class TrigramIndex implements EventIndex {
+    public static final double MIN_SIMILARITY = 0.3;
+    public static final int MAX_RESULTS = 200;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<String>> postings = new HashMap<>();
+    private final Map<String, Set<Integer>> wordEvents = new HashMap<>();
+    private final Map<Integer, Set<String>> eventWords = new HashMap<>();
+
+    @Override
+    public void rebuild(Collection<Event> events) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            wordEvents.clear();
+            eventWords.clear();
+            for (Event event : events) {
+                add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(Event event) {
+        lock.writeLock().lock();
+        try {
+            removeEvent(event.getId());
+            add(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int eventId) {
+        lock.writeLock().lock();
+        try {
+            removeEvent(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the events matching every word of the query, best match first,
+     * mapped to their score: the mean over query words of the best similarity
+     * found in the event. At most MAX_RESULTS entries.
+     */
+    public LinkedHashMap<Integer, Double> search(String query) {
+        return search(query, MAX_RESULTS);
+    }
+
+    // As search(query), keeping at most maxResults entries
+    public LinkedHashMap<Integer, Double> search(String query, int maxResults) {
+        List<String> queryWords = words(query);
+        LinkedHashMap<Integer, Double> ranked = new LinkedHashMap<>();
+        if (queryWords.isEmpty()) {
+            return ranked;
+        }
+
+        Map<Integer, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String queryWord : queryWords) {
+                Map<Integer, Double> best = new HashMap<>();
+                for (Map.Entry<String, Double> match : matchingWords(queryWord).entrySet()) {
+                    for (Integer eventId : wordEvents.get(match.getKey())) {
+                        best.merge(eventId, match.getValue(), Math::max);
+                    }
+                }
+                if (scores == null) {
+                    scores = best;
+                } else {
+                    // Every query word has to match something in the event
+                    scores.keySet().retainAll(best.keySet());
+                    for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+                        score.setValue(score.getValue() + best.get(score.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return ranked;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Integer, Double>> entries = new ArrayList<>(scores.entrySet());
+        entries.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        for (Map.Entry<Integer, Double> entry : entries.subList(0, Math.min(maxResults, entries.size()))) {
+            ranked.put(entry.getKey(), entry.getValue() / queryWords.size());
+        }
+        return ranked;
+    }
+
+    // Indexed words close enough to the query word, with their similarity
+    private Map<String, Double> matchingWords(String queryWord) {
+        Set<String> queryTrigrams = trigrams(queryWord);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            Set<String> words = postings.get(trigram);
+            if (words != null) {
+                for (String word : words) {
+                    shared.merge(word, 1, Integer::sum);
+                }
+            }
+        }
+
+        int maxEdits = maxEdits(queryWord);
+        Map<String, Double> matches = new HashMap<>();
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            String word = candidate.getKey();
+            int common = candidate.getValue();
+            double similarity = (double) common / (queryTrigrams.size() + trigrams(word).size() - common);
+            if (similarity >= MIN_SIMILARITY
+                    || (maxEdits > 0 && withinEditDistance(queryWord, word, maxEdits))) {
+                matches.put(word, similarity);
+            }
+        }
+        return matches;
+    }
+
+    // Typos tolerated for a word of this length: none for very short words
+    private static int maxEdits(String word) {
+        if (word.length() < 4) {
+            return 0;
+        }
+        return word.length() < 8 ? 1 : 2;
+    }
+
+    // Levenshtein distance <= maxEdits, computed only within the diagonal band that can still qualify
+    static boolean withinEditDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return false;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - maxEdits);
+            int to = Math.min(b.length(), i + maxEdits);
+            current[0] = i;
+            if (from > 1) {
+                current[from - 1] = maxEdits + 1;
+            }
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < b.length()) {
+                current[to + 1] = maxEdits + 1;
+            }
+            if (rowMin > maxEdits) {
+                return false;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()] <= maxEdits;
+    }
+
+    private void add(Event event) {
+        Set<String> words = new HashSet<>();
+        words.addAll(words(event.getTitle()));
+        words.addAll(words(event.getOrganizer()));
+        words.addAll(words(event.getLocation()));
+        eventWords.put(event.getId(), words);
+        for (String word : words) {
+            Set<Integer> events = wordEvents.get(word);
+            if (events == null) {
+                events = new HashSet<>();
+                wordEvents.put(word, events);
+                for (String trigram : trigrams(word)) {
+                    postings.computeIfAbsent(trigram, t -> new HashSet<>()).add(word);
+                }
+            }
+            events.add(event.getId());
+        }
+    }
+
+    private void removeEvent(int eventId) {
+        Set<String> words = eventWords.remove(eventId);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            Set<Integer> events = wordEvents.get(word);
+            events.remove(eventId);
+            if (events.isEmpty()) {
+                wordEvents.remove(word);
+                for (String trigram : trigrams(word)) {
+                    Set<String> posting = postings.get(trigram);
+                    posting.remove(word);
+                    if (posting.isEmpty()) {
+                        postings.remove(trigram);
+                    }
+                }
+            }
+        }
+    }
+
+    // Lowercased alphanumeric words of the text
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // Trigrams of the word padded with two leading blanks and one trailing blank, as pg_trgm does
+    static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
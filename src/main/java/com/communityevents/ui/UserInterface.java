@@ -2,6 +2,10 @@ package com.communityevents.ui;
 
 import com.communityevents.model.Event;
 import com.communityevents.model.Comment;
+import com.communityevents.json.JsonCodec;
+import com.communityevents.search.FacetCount;
+import com.communityevents.search.Suggestion;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
 import java.util.List;
 import java.util.Map;
@@ -21,10 +25,8 @@ public class UserInterface {
     }
 
     public void displayEventList(Context ctx, List<Event> events) {
-        Map<String, Object> response = new HashMap<>();
-        response.put("events", events);
-        response.put("count", events.size());
-        ctx.json(response);
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        ctx.result(JsonCodec.getInstance().encodeEventList(events));
     }
 
     public void displayEventDetails(Context ctx, Event event) {
@@ -42,9 +44,27 @@ public class UserInterface {
         ctx.json(response);
     }
 
-    public void displayFilters(Context ctx) {
+    public void displayRsvp(Context ctx, int eventId, boolean attending, int rsvpCount) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("eventId", eventId);
+        response.put("attending", attending);
+        response.put("rsvpCount", rsvpCount);
+        ctx.json(response);
+    }
+
+    public void displaySuggestions(Context ctx, List<Suggestion> suggestions) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("suggestions", suggestions);
+        response.put("count", suggestions.size());
+        ctx.json(response);
+    }
+
+    public void displayFilters(Context ctx, Map<String, List<FacetCount>> facets, int total) {
         Map<String, Object> response = new HashMap<>();
         response.put("filters", List.of("category", "date", "location", "keyword"));
+        response.put("facets", facets);
+        response.put("total", total);
         ctx.json(response);
     }
 
@@ -68,6 +88,13 @@ public class UserInterface {
         ctx.json(response);
     }
 
+    public void displayHealth(Context ctx, String status, int statusCode) {
+        ctx.status(statusCode);
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", status);
+        ctx.json(response);
+    }
+
     public void displayUserData(Context ctx, Object userData) {
         ctx.json(userData);
     }
@@ -1,4 +1,4 @@
--- Community Events Database Schema
+-- Community Events Database Schema (V1: initial tables and indexes)
 
 -- Users table
 CREATE TABLE IF NOT EXISTS users (
@@ -0,0 +1,38 @@
+-- Sample data (V2), only seeded into a database that has no users yet
+
+DO $$
+DECLARE
+    john_id INTEGER;
+    jane_id INTEGER;
+    bob_id INTEGER;
+    market_id INTEGER;
+BEGIN
+    IF EXISTS (SELECT 1 FROM users) THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO users (name, email, password, is_logged_in)
+        VALUES ('John Doe', 'john@example.com', 'password123', FALSE) RETURNING user_id INTO john_id;
+    INSERT INTO users (name, email, password, is_logged_in)
+        VALUES ('Jane Smith', 'jane@example.com', 'password123', FALSE) RETURNING user_id INTO jane_id;
+    INSERT INTO users (name, email, password, is_logged_in)
+        VALUES ('Bob Johnson', 'bob@example.com', 'password123', FALSE) RETURNING user_id INTO bob_id;
+
+    INSERT INTO events (title, description, date, time, location, category, organizer, creator_id)
+        VALUES ('Neighborhood Cleanup', 'Join us for a community cleanup day!', '2025-05-12', '10:00 AM',
+                'City Park', 'Community', 'John Doe', john_id);
+    INSERT INTO events (title, description, date, time, location, category, organizer, creator_id)
+        VALUES ('Farmers Market', 'Local vendors, produce, and crafts!', '2025-05-13', '8:00 AM',
+                'Main Street', 'Market', 'Jane Smith', jane_id) RETURNING id INTO market_id;
+    INSERT INTO events (title, description, date, time, location, category, organizer, creator_id)
+        VALUES ('Yoga in the Park', 'Free yoga session for all levels', '2025-05-14', '9:00 AM',
+                'City Park', 'Fitness', 'Bob Johnson', bob_id);
+    INSERT INTO events (title, description, date, time, location, category, organizer, creator_id)
+        VALUES ('Art Workshop', 'Learn painting techniques from local artists', '2025-05-15', '5:00 PM',
+                'Community Center', 'Art', 'Jane Smith', jane_id);
+
+    INSERT INTO comments (event_id, user_id, text, user_name)
+        VALUES (market_id, john_id, 'Can''t wait for this event!', 'John Doe');
+    INSERT INTO comments (event_id, user_id, text, user_name)
+        VALUES (market_id, bob_id, 'Will there be parking nearby?', 'Bob Johnson');
+END $$;
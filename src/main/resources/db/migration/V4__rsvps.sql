@@ -0,0 +1,13 @@
+-- RSVPs (V4). One row per attending user; events.rsvp_count is a denormalized
+-- count refreshed in batches from this table.
+
+CREATE TABLE IF NOT EXISTS rsvps (
+    event_id INTEGER NOT NULL REFERENCES events(id) ON DELETE CASCADE,
+    user_id INTEGER NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (event_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_rsvps_user_id ON rsvps(user_id);
+
+ALTER TABLE events ADD COLUMN IF NOT EXISTS rsvp_count INTEGER NOT NULL DEFAULT 0;
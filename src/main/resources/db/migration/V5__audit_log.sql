@@ -0,0 +1,15 @@
+-- Audit trail (V5). Written in batches by the audit consumer; user_id and
+-- target_id are kept without foreign keys so records outlive what they describe.
+
+CREATE TABLE IF NOT EXISTS audit_log (
+    id BIGSERIAL PRIMARY KEY,
+    sequence BIGINT NOT NULL,
+    occurred_at TIMESTAMPTZ NOT NULL,
+    action VARCHAR(32) NOT NULL,
+    user_id INTEGER,
+    target_id INTEGER,
+    recorded_at TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_audit_log_occurred_at ON audit_log(occurred_at);
+CREATE INDEX IF NOT EXISTS idx_audit_log_user_id ON audit_log(user_id);
@@ -0,0 +1,3 @@
+-- Row version for optimistic concurrency on event edits (V6)
+
+ALTER TABLE events ADD COLUMN IF NOT EXISTS version INTEGER NOT NULL DEFAULT 1;
@@ -0,0 +1,32 @@
+-- Cold storage for past events and their comments (V7). The archive job moves
+-- rows here from events and comments so that the live tables and their indexes
+-- only hold recent and upcoming events; lookups by id fall back to these.
+-- No foreign keys: archived rows are never written again.
+
+CREATE TABLE IF NOT EXISTS events_archive (
+    id INTEGER PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    description TEXT NOT NULL,
+    date VARCHAR(50) NOT NULL,
+    time VARCHAR(50) NOT NULL,
+    location VARCHAR(255) NOT NULL,
+    category VARCHAR(100),
+    organizer VARCHAR(255),
+    creator_id INTEGER,
+    latitude DOUBLE PRECISION,
+    longitude DOUBLE PRECISION,
+    rsvp_count INTEGER NOT NULL DEFAULT 0,
+    version INTEGER NOT NULL DEFAULT 1,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS comments_archive (
+    id INTEGER PRIMARY KEY,
+    event_id INTEGER NOT NULL,
+    user_id INTEGER NOT NULL,
+    text TEXT NOT NULL,
+    user_name VARCHAR(255) NOT NULL,
+    timestamp TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_comments_archive_event_id ON comments_archive(event_id);
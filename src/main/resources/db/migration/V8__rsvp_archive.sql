@@ -0,0 +1,12 @@
+-- Cold storage for the RSVPs of archived events (V8). The archive job moves
+-- them here in the same statement as the event and its comments, instead of
+-- letting ON DELETE CASCADE drop them. No foreign keys, as in V7.
+
+CREATE TABLE IF NOT EXISTS rsvps_archive (
+    event_id INTEGER NOT NULL,
+    user_id INTEGER NOT NULL,
+    created_at TIMESTAMP,
+    PRIMARY KEY (event_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_rsvps_archive_user_id ON rsvps_archive(user_id);
@@ -0,0 +1,145 @@
+package com.communityevents.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+    private static final long HOUR = 3_600_000;
+
+    // Window of 10, at least 4 calls, opens at 50% failed or 50% slower than 100 ms
+    private static CircuitBreaker breaker(long openMillis, int probeCalls) {
+        return new CircuitBreaker(10, 4, 50, 50, 100, openMillis, probeCalls);
+    }
+
+    private static void call(CircuitBreaker breaker, boolean failed, long durationMillis) {
+        CircuitBreaker.Permit permit = breaker.acquire();
+        assertEquals(CircuitBreaker.Permit.CALL, permit);
+        breaker.onResult(permit, failed, durationMillis);
+    }
+
+    @Test
+    void staysClosedUntilMinimumCallsAreRecorded() {
+        CircuitBreaker breaker = breaker(HOUR, 1);
+        for (int i = 0; i < 3; i++) {
+            call(breaker, true, 1);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, true, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void opensAtFailureRateAndRejectsCalls() {
+        CircuitBreaker breaker = breaker(HOUR, 1);
+        call(breaker, false, 1);
+        call(breaker, false, 1);
+        call(breaker, false, 1);
+        call(breaker, true, 1);
+        call(breaker, true, 1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, true, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.acquire());
+        assertEquals(1L, breaker.getStats().get("rejected"));
+        assertTrue(breaker.getRetryAfterSeconds() > 3000);
+    }
+
+    @Test
+    void opensAtSlowCallRate() {
+        CircuitBreaker breaker = breaker(HOUR, 1);
+        call(breaker, false, 1);
+        call(breaker, false, 150);
+        call(breaker, false, 1);
+        call(breaker, false, 100);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = breaker(HOUR, 1);
+        for (int i = 0; i < 8; i++) {
+            call(breaker, false, 1);
+        }
+        call(breaker, true, 1);
+        call(breaker, true, 1);
+        assertEquals(10, breaker.getStats().get("recentCalls"));
+        assertEquals(2, breaker.getStats().get("recentFailures"));
+
+        // Ten more successes push both failures out of the window
+        for (int i = 0; i < 10; i++) {
+            call(breaker, false, 1);
+        }
+        assertEquals(10, breaker.getStats().get("recentCalls"));
+        assertEquals(0, breaker.getStats().get("recentFailures"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpenLetsOnlyProbeCallsThroughAndClosesWhenTheyAllSucceed() {
+        CircuitBreaker breaker = breaker(0, 2);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 1);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        CircuitBreaker.Permit first = breaker.acquire();
+        CircuitBreaker.Permit second = breaker.acquire();
+        assertEquals(CircuitBreaker.Permit.PROBE, first);
+        assertEquals(CircuitBreaker.Permit.PROBE, second);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertNull(breaker.acquire());
+
+        breaker.onResult(first, false, 1);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(second, false, 1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // Closing starts from an empty window
+        assertEquals(0, breaker.getStats().get("recentCalls"));
+    }
+
+    @Test
+    void failedOrSlowProbeOpensAgain() {
+        CircuitBreaker breaker = breaker(0, 2);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 1);
+        }
+        CircuitBreaker.Permit probe = breaker.acquire();
+        breaker.onResult(probe, true, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2L, breaker.getStats().get("timesOpened"));
+
+        probe = breaker.acquire();
+        breaker.onResult(probe, false, 500);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(3L, breaker.getStats().get("timesOpened"));
+    }
+
+    @Test
+    void releasedProbeFreesItsSlot() {
+        CircuitBreaker breaker = breaker(0, 1);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 1);
+        }
+        CircuitBreaker.Permit probe = breaker.acquire();
+        assertNull(breaker.acquire());
+        breaker.release(probe);
+        assertEquals(CircuitBreaker.Permit.PROBE, breaker.acquire());
+    }
+
+    @Test
+    void resultsOfCallsStartedBeforeOpeningAreIgnored() {
+        CircuitBreaker breaker = breaker(HOUR, 1);
+        CircuitBreaker.Permit late = breaker.acquire();
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true, 1);
+        }
+        breaker.onResult(late, false, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(4, breaker.getStats().get("recentCalls"));
+    }
+}
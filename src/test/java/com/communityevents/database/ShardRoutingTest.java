@@ -0,0 +1,64 @@
+package com.communityevents.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.communityevents.model.Event;
+import com.communityevents.model.User;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+// Needs PostgreSQL: DB_URL for the default community and at least one shard in DB_SHARDS
+@EnabledIfEnvironmentVariable(named = "DB_SHARDS", matches = ".+")
+class ShardRoutingTest {
+
+    @Test
+    void eventCreatedOnSecondShardIsReadBackById() throws SQLException {
+        DatabaseConnectionManager connectionManager = DatabaseConnectionManager.getInstance();
+        Database database = Database.getInstance();
+        String community = connectionManager.getCommunities().get(1);
+
+        User user;
+        Event saved;
+        connectionManager.bindRequestCommunity(community);
+        try {
+            user = database.saveUser(new User(0, "Shard Test",
+                    "shard-test-" + System.nanoTime() + "@example.com", "secret123"));
+            Event event = new Event(0, "Shard test event", "Created on " + community, "2030-01-01",
+                    "10:00 AM", "Town Hall", "Community", "Shard Test", user.getUserId());
+            saved = database.saveEvent(event);
+        } finally {
+            connectionManager.bindRequestCommunity(null);
+        }
+        assertNotNull(saved);
+        assertEquals(community, connectionManager.communityOfId(saved.getId()));
+        assertEquals(community, connectionManager.communityOfId(user.getUserId()));
+
+        try {
+            // No community bound: the id alone has to lead to the shard
+            Event found = database.getEventDetails(saved.getId());
+            assertNotNull(found);
+            assertEquals("Shard test event", found.getTitle());
+            assertEquals(community, found.getCommunity());
+            assertFalse(hasEvent(connectionManager, connectionManager.getDefaultCommunity(), saved.getId()));
+        } finally {
+            database.deleteEvent(saved.getId(), user.getUserId(), null);
+        }
+    }
+
+    private static boolean hasEvent(DatabaseConnectionManager connectionManager, String community, int eventId)
+            throws SQLException {
+        try (Connection conn = connectionManager.getConnection(community);
+             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM events WHERE id = ?")) {
+            stmt.setInt(1, eventId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.communityevents.database.embedded;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.communityevents.model.Event;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A store that is never closed stands in for a crash: nothing is snapshotted on the way out
+class EmbeddedStoreTest {
+    private static final String COMMUNITY = "default";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void closedStoreIsRestoredFromItsSnapshot() throws IOException {
+        EmbeddedStore store = open(1000);
+        Event kept = store.saveEvent(event("Kept"));
+        Event deleted = store.saveEvent(event("Deleted"));
+        store.saveComment(kept.getId(), "See you there", 7, "Sam");
+        store.addRsvp(kept.getId(), 7);
+        store.deleteEvent(deleted.getId(), 1, null);
+        store.close();
+
+        store = open(1000);
+        assertEquals("Kept", store.getEvent(kept.getId()).getTitle());
+        assertNull(store.getEvent(deleted.getId()));
+        assertEquals(1, store.getCommentsForEvent(kept.getId()).size());
+        assertTrue(store.hasRsvp(kept.getId(), 7));
+        store.close();
+    }
+
+    @Test
+    void changesAfterTheLastSnapshotAreReplayedAfterACrash() throws IOException {
+        // A snapshot is taken at the third change; the next two are only in the log
+        EmbeddedStore crashed = open(3);
+        for (int i = 0; i < 5; i++) {
+            crashed.saveEvent(event("Event " + i));
+        }
+        assertTrue(Files.exists(directory.resolve("snapshot.dat")));
+
+        EmbeddedStore store = open(3);
+        assertEquals(List.of("Event 0", "Event 1", "Event 2", "Event 3", "Event 4"), titles(store));
+        store.close();
+    }
+
+    @Test
+    void changeTornByACrashIsDroppedAndEveryEarlierChangeKept() throws IOException {
+        EmbeddedStore crashed = open(1000);
+        for (int i = 0; i < 4; i++) {
+            crashed.saveEvent(event("Event " + i));
+        }
+
+        // The last record lost the end of its payload
+        Path segment = lastSegment();
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 0;
+        int last = 0;
+        while (log.getInt(position) > 0) {
+            last = position;
+            position += 8 + log.getInt(position);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(last + 8 + log.getInt(last) / 2);
+        }
+
+        EmbeddedStore store = open(1000);
+        assertEquals(List.of("Event 0", "Event 1", "Event 2"), titles(store));
+        // The lost event's id is free again and the new record replays cleanly
+        Event next = store.saveEvent(event("Event 3 again"));
+        assertEquals(4, next.getId());
+        store.close();
+        store = open(1000);
+        assertEquals(List.of("Event 0", "Event 1", "Event 2", "Event 3 again"), titles(store));
+        store.close();
+    }
+
+    @Test
+    void storeSpanningSeveralSegmentsIsReplayedInOrder() throws IOException {
+        EmbeddedStore crashed = EmbeddedStore.open(directory, 1024, 1000, false, COMMUNITY);
+        for (int i = 0; i < 20; i++) {
+            crashed.saveEvent(event("Event " + i));
+        }
+        assertTrue(segments().size() > 1);
+
+        EmbeddedStore store = EmbeddedStore.open(directory, 1024, 1000, false, COMMUNITY);
+        assertEquals(20, store.getEvents().size());
+        assertEquals("Event 19", store.getEvent(20).getTitle());
+        store.close();
+    }
+
+    private EmbeddedStore open(long snapshotEvery) throws IOException {
+        return EmbeddedStore.open(directory, 64 * 1024, snapshotEvery, false, COMMUNITY);
+    }
+
+    private static Event event(String title) {
+        return new Event(0, title, "Description", "2030-01-01", "10:00 AM", "Town Hall",
+                "Community", "Organizer", 1);
+    }
+
+    private static List<String> titles(EmbeddedStore store) {
+        return store.getEvents().stream()
+                .sorted((a, b) -> Integer.compare(a.getId(), b.getId()))
+                .map(Event::getTitle)
+                .collect(Collectors.toList());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = segments();
+        return segments.get(segments.size() - 1);
+    }
+}
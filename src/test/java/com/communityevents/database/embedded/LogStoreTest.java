@@ -0,0 +1,171 @@
+package com.communityevents.database.embedded;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LogStoreTest {
+    private static final byte TYPE = 1;
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordTornMidwayIsDiscardedAndEveryCompleteRecordKept() throws IOException {
+        LogStore log = open(SEGMENT_BYTES, new ArrayList<>());
+        for (int i = 0; i < 5; i++) {
+            log.append(TYPE, bytes("record-" + i));
+        }
+        log.close();
+
+        // A crash while the last record was written: its length and checksum are there, half its payload is not
+        Path segment = segments().get(0);
+        List<Integer> offsets = recordOffsets(segment);
+        truncate(segment, offsets.get(4) + 12);
+
+        List<String> replayed = new ArrayList<>();
+        log = open(SEGMENT_BYTES, replayed);
+        assertEquals(List.of("record-0", "record-1", "record-2", "record-3"), replayed);
+
+        // The torn tail was cleared, so the next record lands after the last complete one
+        log.append(TYPE, bytes("after-crash"));
+        log.close();
+        replayed = new ArrayList<>();
+        open(SEGMENT_BYTES, replayed).close();
+        assertEquals(List.of("record-0", "record-1", "record-2", "record-3", "after-crash"), replayed);
+    }
+
+    @Test
+    void recordsRollOverIntoNewSegments() throws IOException {
+        // 64-byte segments hold three of these 17-byte records each
+        LogStore log = open(64, new ArrayList<>());
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            String record = "record-" + i;
+            log.append(TYPE, bytes(record));
+            written.add(record);
+        }
+        log.close();
+        assertEquals(3, segments().size());
+
+        List<String> replayed = new ArrayList<>();
+        open(64, replayed).close();
+        assertEquals(written, replayed);
+    }
+
+    @Test
+    void tornRecordInLastSegmentAfterRolloverKeepsEarlierSegments() throws IOException {
+        LogStore log = open(64, new ArrayList<>());
+        for (int i = 0; i < 5; i++) {
+            log.append(TYPE, bytes("record-" + i));
+        }
+        log.close();
+
+        List<Path> segments = segments();
+        Path last = segments.get(segments.size() - 1);
+        List<Integer> offsets = recordOffsets(last);
+        truncate(last, offsets.get(offsets.size() - 1) + 10);
+
+        List<String> replayed = new ArrayList<>();
+        open(64, replayed).close();
+        assertEquals(List.of("record-0", "record-1", "record-2", "record-3"), replayed);
+    }
+
+    @Test
+    void snapshotReplacesOldSegmentsAndLaterRecordsAreReplayedAfterIt() throws IOException {
+        List<String> state = new ArrayList<>();
+        LogStore log = open(64, state);
+        for (int i = 0; i < 5; i++) {
+            String record = "record-" + i;
+            log.append(TYPE, bytes(record));
+            state.add(record);
+        }
+        // The snapshot holds the state compacted to the odd records
+        log.snapshot(sink -> {
+            for (String record : state) {
+                if (record.endsWith("1") || record.endsWith("3")) {
+                    sink.append(TYPE, bytes(record));
+                }
+            }
+        });
+        assertEquals(0, log.getRecordsSinceSnapshot());
+        assertEquals(1, segments().size());
+        log.append(TYPE, bytes("record-5"));
+        log.append(TYPE, bytes("record-6"));
+        log.append(TYPE, bytes("record-7"));
+        log.close();
+
+        List<String> replayed = new ArrayList<>();
+        log = open(64, replayed);
+        assertEquals(List.of("record-1", "record-3", "record-5", "record-6", "record-7"), replayed);
+        assertEquals(3, log.getRecordsSinceSnapshot());
+        log.close();
+    }
+
+    @Test
+    void interruptedSnapshotLeavesPreviousStateInPlace() throws IOException {
+        LogStore log = open(SEGMENT_BYTES, new ArrayList<>());
+        log.append(TYPE, bytes("record-0"));
+        log.close();
+        Files.write(directory.resolve("snapshot.tmp"), bytes("half a snapshot"));
+
+        List<String> replayed = new ArrayList<>();
+        open(SEGMENT_BYTES, replayed).close();
+        assertEquals(List.of("record-0"), replayed);
+        assertFalse(Files.exists(directory.resolve("snapshot.tmp")));
+    }
+
+    private LogStore open(int segmentBytes, List<String> replayed) throws IOException {
+        LogStore log = new LogStore(directory, segmentBytes, false);
+        log.open((type, payload) -> {
+            assertEquals(TYPE, type);
+            replayed.add(new String(payload, StandardCharsets.UTF_8));
+        });
+        return log;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Start of each record in a segment, following the length headers up to the zero-filled end
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<Integer> offsets = new ArrayList<>();
+        int position = 0;
+        while (position + 8 <= buffer.capacity() && buffer.getInt(position) > 0) {
+            offsets.add(position);
+            position += 8 + buffer.getInt(position);
+        }
+        assertTrue(offsets.size() > 0);
+        return offsets;
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package com.communityevents.export;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.communityevents.model.Event;
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.jupiter.api.Test;
+
+class CsvExporterTest {
+
+    private static String row(Event event) throws IOException {
+        StringWriter out = new StringWriter();
+        new CsvExporter().write(out, event);
+        return out.toString();
+    }
+
+    @Test
+    void quotesFieldsWithSeparatorsQuotesAndLineBreaks() throws IOException {
+        Event event = new Event(7, "Bake sale, round 2", "Say \"hi\"\nbring cake", "2030-01-01", "10:00 AM",
+                "Hall", "Food", "PTA", 1);
+
+        assertEquals("7,\"Bake sale, round 2\",\"Say \"\"hi\"\"\nbring cake\",2030-01-01,10:00 AM,Hall,Food,PTA,,\r\n",
+                row(event));
+    }
+
+    @Test
+    void formulaLikeTextIsWrittenAsText() throws IOException {
+        Event event = new Event(7, "=HYPERLINK(\"http://evil\",\"x\")", "+1 for cake", "2030-01-01", "10:00 AM",
+                "@home", "-Food", "\tPTA", 1);
+
+        assertEquals("7,\"'=HYPERLINK(\"\"http://evil\"\",\"\"x\"\")\",'+1 for cake,2030-01-01,10:00 AM,"
+                + "'@home,'-Food,'\tPTA,,\r\n", row(event));
+    }
+
+    @Test
+    void negativeCoordinatesStayNumbers() throws IOException {
+        Event event = new Event(7, "Harbour walk", "Walk", "2030-01-01", "10:00 AM", "Quay", "Outdoors", "Club", 1);
+        event.setLatitude(-33.8688);
+        event.setLongitude(151.2093);
+
+        assertEquals("7,Harbour walk,Walk,2030-01-01,10:00 AM,Quay,Outdoors,Club,-33.8688,151.2093\r\n", row(event));
+    }
+}
@@ -0,0 +1,65 @@
+package com.communityevents.json;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.communityevents.model.Event;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class EventJsonCacheTest {
+
+    private static Event event(int id, String title, int version) {
+        Event event = new Event(id, title, "Description", "2030-01-01", "10:00 AM", "Hall", "Community", "Club", 1);
+        event.setVersion(version);
+        return event;
+    }
+
+    @Test
+    void reusesTheJsonOfTheSameVersion() {
+        EventJsonCache cache = new EventJsonCache(10);
+        byte[] json = cache.get(event(1, "Quiz night", 1));
+
+        assertSame(json, cache.get(event(1, "Quiz night", 1)));
+        assertTrue(new String(json, StandardCharsets.UTF_8).contains("\"title\":\"Quiz night\""));
+    }
+
+    @Test
+    void newVersionOrRsvpCountIsEncodedAgain() {
+        EventJsonCache cache = new EventJsonCache(10);
+        byte[] first = cache.get(event(1, "Quiz night", 1));
+
+        byte[] updated = cache.get(event(1, "Pub quiz", 2));
+        assertNotSame(first, updated);
+        assertTrue(new String(updated, StandardCharsets.UTF_8).contains("\"title\":\"Pub quiz\""));
+
+        Event attended = event(1, "Pub quiz", 2);
+        attended.setRsvpCount(3);
+        assertNotSame(updated, cache.get(attended));
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesMakeRoomForNewEvents() {
+        EventJsonCache cache = new EventJsonCache(2);
+        byte[] first = cache.get(event(1, "One", 1));
+        cache.get(event(2, "Two", 1));
+        // Using the first event again makes the second the least recently used
+        cache.get(event(1, "One", 1));
+        byte[] third = cache.get(event(3, "Three", 1));
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get(event(1, "One", 1)));
+        assertSame(third, cache.get(event(3, "Three", 1)));
+    }
+
+    @Test
+    void invalidatedEntriesAreDropped() {
+        EventJsonCache cache = new EventJsonCache(10);
+        cache.get(event(1, "One", 1));
+        cache.invalidate(1);
+
+        assertEquals(0, cache.size());
+    }
+}
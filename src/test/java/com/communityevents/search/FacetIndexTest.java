@@ -0,0 +1,95 @@
+package com.communityevents.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.communityevents.model.Event;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class FacetIndexTest {
+
+    private static Event event(int id, String category, String date, String location) {
+        return new Event(id, "Event " + id, "Description", date, "10:00 AM", location, category, "Organizer", 1);
+    }
+
+    private static List<String> counts(FacetIndex index, String facet) {
+        return index.getFacets().get(facet).stream()
+                .map(count -> count.getValue() + "=" + count.getCount())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void countsEachFacetLargestFirst() {
+        FacetIndex index = new FacetIndex();
+        index.rebuild(List.of(
+                event(1, "Music", "2030-06-01", "Park"),
+                event(2, "Music", "2030-06-15", "Hall"),
+                event(3, "Sports", "2030-07-01", "Park"),
+                event(4, "", "2030-07-02", "Park")));
+
+        assertEquals(List.of("Music=2", "Sports=1"), counts(index, FacetIndex.CATEGORY));
+        assertEquals(List.of("2030-06=2", "2030-07=2"), counts(index, FacetIndex.MONTH));
+        assertEquals(List.of("Park=3", "Hall=1"), counts(index, FacetIndex.LOCATION));
+        assertEquals(4, index.getTotal());
+    }
+
+    @Test
+    void updatesMoveCountsAndRemovalsDropEmptyValues() {
+        FacetIndex index = new FacetIndex();
+        index.rebuild(List.of(event(1, "Music", "2030-06-01", "Park"), event(2, "Art", "2030-06-02", "Hall")));
+
+        index.put(event(2, "Music", "2030-06-02", "Hall"));
+        assertEquals(List.of("Music=2"), counts(index, FacetIndex.CATEGORY));
+        assertEquals(2, index.getTotal());
+
+        index.remove(1);
+        index.remove(1);
+        assertEquals(List.of("Music=1"), counts(index, FacetIndex.CATEGORY));
+        assertEquals(List.of("Hall=1"), counts(index, FacetIndex.LOCATION));
+        assertEquals(1, index.getTotal());
+    }
+
+    @Test
+    void facetsAreCachedUntilTheNextWrite() {
+        FacetIndex index = new FacetIndex();
+        index.put(event(1, "Music", "2030-06-01", "Park"));
+        Map<String, List<FacetCount>> facets = index.getFacets();
+        assertSame(facets, index.getFacets());
+
+        index.put(event(2, "Music", "2030-06-01", "Park"));
+        assertNotSame(facets, index.getFacets());
+    }
+
+    @Test
+    void refreshIsIgnoredWhenAWriteRacedWithIt() {
+        FacetIndex index = new FacetIndex();
+        index.put(event(1, "Music", "2030-06-01", "Park"));
+        long generation = index.getGeneration();
+        Map<String, Map<String, Integer>> fresh = Map.of(FacetIndex.CATEGORY, Map.of("Music", 5));
+
+        index.put(event(2, "Art", "2030-06-01", "Park"));
+        assertFalse(index.replaceCounts(fresh, 5, generation));
+        assertEquals(List.of("Art=1", "Music=1"), counts(index, FacetIndex.CATEGORY));
+
+        assertTrue(index.replaceCounts(fresh, 5, index.getGeneration()));
+        assertEquals(List.of("Music=5"), counts(index, FacetIndex.CATEGORY));
+        assertEquals(5, index.getTotal());
+    }
+
+    @Test
+    void countsFacetsOfAResultList() {
+        Map<String, List<FacetCount>> facets = FacetIndex.countFacets(List.of(
+                event(1, "Music", "2030-06-01", "Park"),
+                event(2, "Music", "June 2030", "Park")));
+
+        assertEquals(2, facets.get(FacetIndex.CATEGORY).get(0).getCount());
+        assertEquals(2, facets.get(FacetIndex.MONTH).size());
+        assertEquals("2030-06", FacetIndex.monthOf("2030-06-01"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.communityevents.search;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.communityevents.model.Event;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GeoIndexTest {
+
+    private static Event event(int id, Double latitude, Double longitude) {
+        Event event = new Event(id, "Event " + id, "Description", "2030-01-01", "10:00 AM", "Somewhere",
+                "Community", "Organizer", 1);
+        event.setLatitude(latitude);
+        event.setLongitude(longitude);
+        return event;
+    }
+
+    private static GeoIndex index(Event... events) {
+        GeoIndex index = new GeoIndex();
+        index.rebuild(List.of(events));
+        return index;
+    }
+
+    @Test
+    void findsEventsWithinRadiusNearestFirst() {
+        // Around central London: 0 km, about 3.5 km and about 9 km away, then Oxford
+        GeoIndex index = index(
+                event(1, 51.5074, -0.1278),
+                event(2, 51.5390, -0.1426),
+                event(3, 51.4275, -0.1600),
+                event(4, 51.7520, -1.2577));
+
+        LinkedHashMap<Integer, Double> near = index.findWithin(51.5074, -0.1278, 10);
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(near.keySet()));
+        assertEquals(0.0, near.get(1), 1e-9);
+        assertTrue(near.get(2) < near.get(3));
+        assertTrue(near.get(3) <= 10);
+    }
+
+    @Test
+    void radiusIsAGreatCircleDistanceNotABox() {
+        // 0.1 degrees north and east: inside a 10 km box, but about 13 km away
+        GeoIndex index = index(event(1, 51.6074, -0.0278));
+
+        assertTrue(index.findWithin(51.5074, -0.1278, 10).isEmpty());
+        assertEquals(1, index.findWithin(51.5074, -0.1278, 15).size());
+    }
+
+    @Test
+    void searchCrossesTheAntimeridian() {
+        GeoIndex index = index(event(1, -16.5, 179.95), event(2, -16.5, -179.95));
+
+        LinkedHashMap<Integer, Double> near = index.findWithin(-16.5, 179.99, 20);
+        assertEquals(List.of(1, 2), new ArrayList<>(near.keySet()));
+    }
+
+    @Test
+    void largeRadiusStillFiltersByDistance() {
+        GeoIndex index = index(event(1, 40.7128, -74.0060), event(2, 34.0522, -118.2437), event(3, -33.8688, 151.2093));
+
+        LinkedHashMap<Integer, Double> near = index.findWithin(40.7128, -74.0060, 5000);
+        assertEquals(List.of(1, 2), new ArrayList<>(near.keySet()));
+        assertEquals(3, index.findWithin(0, 0, 25000).size());
+    }
+
+    @Test
+    void eventsWithoutValidCoordinatesAreNotIndexed() {
+        GeoIndex index = index(event(1, null, null), event(2, 95.0, 10.0), event(3, 10.0, 10.0));
+
+        assertEquals(List.of(3), new ArrayList<>(index.findWithin(10.0, 10.0, 1).keySet()));
+    }
+
+    @Test
+    void movedAndRemovedEventsAreReindexed() {
+        GeoIndex index = index(event(1, 48.8566, 2.3522));
+        index.put(event(1, 52.5200, 13.4050));
+        assertTrue(index.findWithin(48.8566, 2.3522, 50).isEmpty());
+        assertEquals(1, index.findWithin(52.5200, 13.4050, 50).size());
+
+        index.remove(1);
+        assertTrue(index.findWithin(52.5200, 13.4050, 50).isEmpty());
+    }
+
+    @Test
+    void parsesPoints() {
+        assertArrayEquals(new double[] {51.5, -0.12}, GeoIndex.parsePoint(" 51.5, -0.12 "), 1e-9);
+        assertNull(GeoIndex.parsePoint("51.5"));
+        assertNull(GeoIndex.parsePoint("north,west"));
+        assertNull(GeoIndex.parsePoint("91,0"));
+        assertNull(GeoIndex.parsePoint(null));
+    }
+}
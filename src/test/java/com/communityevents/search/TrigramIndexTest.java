@@ -0,0 +1,95 @@
+package com.communityevents.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.communityevents.model.Event;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+
+    private static Event event(int id, String title, String organizer, String location) {
+        return new Event(id, title, "Description", "2030-01-01", "10:00 AM", location, "Community", organizer, 1);
+    }
+
+    private static TrigramIndex index(Event... events) {
+        TrigramIndex index = new TrigramIndex();
+        index.rebuild(List.of(events));
+        return index;
+    }
+
+    @Test
+    void misspelledWordFindsTheEvent() {
+        TrigramIndex index = index(
+                event(1, "Morning Yoga", "Studio One", "Park"),
+                event(2, "Book Club", "Library", "Main Street"));
+
+        assertEquals(List.of(1), new ArrayList<>(index.search("yogga").keySet()));
+        assertEquals(List.of(2), new ArrayList<>(index.search("libary").keySet()));
+    }
+
+    @Test
+    void everyQueryWordHasToMatch() {
+        TrigramIndex index = index(
+                event(1, "Farmers Market", "Green Growers", "Town Square"),
+                event(2, "Flea Market", "Collectors", "Town Square"));
+
+        assertEquals(List.of(1), new ArrayList<>(index.search("farmer market").keySet()));
+        assertTrue(index.search("farmer concert").isEmpty());
+    }
+
+    @Test
+    void closerMatchesRankFirst() {
+        TrigramIndex index = index(
+                event(1, "Yogurt Tasting", "Dairy Co", "Market Hall"),
+                event(2, "Yoga Class", "Studio One", "Park"));
+
+        LinkedHashMap<Integer, Double> ranked = index.search("yoga");
+        assertEquals(2, ranked.keySet().iterator().next());
+        assertEquals(1.0, ranked.get(2), 1e-9);
+    }
+
+    @Test
+    void shortWordsAreNotMatchedByEditDistance() {
+        TrigramIndex index = index(event(1, "Art Walk", "Gallery", "Old Town"));
+
+        assertFalse(index.search("art").isEmpty());
+        assertTrue(index.search("ant").isEmpty());
+    }
+
+    @Test
+    void updatesAndRemovalsAreReflected() {
+        TrigramIndex index = index(event(1, "Chess Night", "Club", "Cafe"));
+        index.put(event(1, "Poker Night", "Club", "Cafe"));
+        assertTrue(index.search("chess").isEmpty());
+        assertEquals(List.of(1), new ArrayList<>(index.search("poker").keySet()));
+
+        index.remove(1);
+        assertTrue(index.search("poker").isEmpty());
+    }
+
+    @Test
+    void resultsAreCappedUnlessALargerLimitIsAsked() {
+        List<Event> events = new ArrayList<>();
+        for (int id = 1; id <= TrigramIndex.MAX_RESULTS + 50; id++) {
+            events.add(event(id, "Running Club " + id, "Runners", "Park"));
+        }
+        TrigramIndex index = new TrigramIndex();
+        index.rebuild(events);
+
+        assertEquals(TrigramIndex.MAX_RESULTS, index.search("runing").size());
+        assertEquals(events.size(), index.search("runing", Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void editDistanceIsBounded() {
+        assertTrue(TrigramIndex.withinEditDistance("market", "markte", 2));
+        assertTrue(TrigramIndex.withinEditDistance("concert", "concerts", 1));
+        assertFalse(TrigramIndex.withinEditDistance("concert", "consort", 1));
+        assertFalse(TrigramIndex.withinEditDistance("yoga", "yogalates", 2));
+    }
+}